@@ -0,0 +1,147 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An asynchronous, batched access log. Request threads hand their log lines to a bounded ring
+ * buffer without ever blocking or touching the file system, and a single background thread drains
+ * that buffer in batches into the log file. When the buffer is full, new lines are dropped and
+ * counted rather than slowing requests down. Once the log file grows past a size limit it is
+ * rotated: access.log becomes access.log.1, access.log.1 becomes access.log.2, and so on, up to a
+ * fixed number of old files.
+ */
+public class AccessLog {
+
+  private static final Metrics.Counter DROPPED_LINES = Metrics.counter(
+      "campus_access_log_dropped_total",
+      "Access log lines dropped because the log buffer was full.", "");
+
+  // the most lines written to the file in one batch
+  private static final int BATCH_SIZE = 1024;
+
+  private final File file;
+  private final long maxBytes;
+  private final int maxFiles;
+  private final ArrayBlockingQueue<String> buffer;
+  private final Thread writerThread;
+  private BufferedWriter out; // only used by the writer thread
+  private long fileBytes;
+  private volatile boolean closed = false;
+
+  /**
+   * Opens (or creates) a log file, and starts the background thread that writes to it.
+   *
+   * @param filename the path of the current log file
+   * @param maxBytes the size in bytes after which the log file is rotated
+   * @param maxFiles the number of rotated files to keep alongside the current one
+   * @param capacity the number of lines the ring buffer can hold before lines are dropped
+   * @throws IOException if the log file cannot be opened
+   */
+  public AccessLog(String filename, long maxBytes, int maxFiles, int capacity)
+      throws IOException {
+    this.file = new File(filename);
+    this.maxBytes = maxBytes;
+    this.maxFiles = maxFiles;
+    this.buffer = new ArrayBlockingQueue<>(capacity);
+    open();
+    writerThread = new Thread(this::writeLines, "access-log-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Queues one line to be written to the log. This never blocks: if the buffer is full, the line
+   * is dropped instead.
+   *
+   * @param line the log line, without a trailing newline
+   * @return true if the line was queued, or false if it was dropped
+   */
+  public boolean log(String line) {
+    if (!closed && buffer.offer(line))
+      return true;
+    DROPPED_LINES.increment();
+    return false;
+  }
+
+  /**
+   * Writes any queued lines, then stops the background thread and closes the log file.
+   */
+  public void close() {
+    closed = true;
+    writerThread.interrupt();
+    try {
+      writerThread.join(5000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // runs on the background thread: repeatedly drains the buffer and writes its lines to the file
+  private void writeLines() {
+    List<String> batch = new ArrayList<>(BATCH_SIZE);
+    while (!closed || !buffer.isEmpty()) {
+      try {
+        String first = buffer.poll(1, TimeUnit.SECONDS);
+        if (first == null)
+          continue;
+        batch.add(first);
+      } catch (InterruptedException e) {
+        // close() interrupts this thread, after which remaining lines are still written
+      }
+      buffer.drainTo(batch, BATCH_SIZE - batch.size());
+      try {
+        for (String line : batch)
+          write(line);
+        out.flush();
+      } catch (IOException e) {
+        System.err.println("Unable to write access log: " + e);
+      }
+      batch.clear();
+    }
+    try {
+      out.close();
+    } catch (IOException e) {
+      System.err.println("Unable to close access log: " + e);
+    }
+  }
+
+  // writes one line to the current file, rotating that file first when it is full
+  private void write(String line) throws IOException {
+    byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+    if (fileBytes > 0 && fileBytes + bytes.length > maxBytes)
+      rotate();
+    out.write(line);
+    out.write('\n');
+    fileBytes += bytes.length;
+  }
+
+  // shifts each existing log file to the next number, dropping the oldest, and starts a new one
+  private void rotate() throws IOException {
+    out.close();
+    new File(file.getPath() + "." + maxFiles).delete();
+    for (int i = maxFiles - 1; i >= 1; i--) {
+      File older = new File(file.getPath() + "." + i);
+      if (older.exists())
+        older.renameTo(new File(file.getPath() + "." + (i + 1)));
+    }
+    if (maxFiles > 0)
+      file.renameTo(new File(file.getPath() + ".1"));
+    else
+      file.delete();
+    open();
+  }
+
+  // opens the current log file for appending
+  private void open() throws IOException {
+    fileBytes = file.length();
+    out = new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+  }
+}
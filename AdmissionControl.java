@@ -0,0 +1,146 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how many requests of one kind can run at the same time. Requests are admitted before they
+ * are handed to the threads that run them, and never block a thread while they wait: requests
+ * beyond the limit are held in a bounded queue for a short time, and are started by the next
+ * request of their kind to complete. Once that queue is full (or their wait runs out) they are
+ * shed: rejected immediately, so that callers can fail fast instead of piling up behind expensive
+ * work. Shed requests are counted in the campus_admission_shed_total metric.
+ */
+public class AdmissionControl {
+  // sheds the requests that have waited too long, for every kind of request
+  private static final ScheduledExecutorService timeouts =
+      Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "admission-timeouts");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final int maxRunning;
+  private final int maxWaiting;
+  private final long maxWaitMillis;
+  private final Metrics.Counter shed;
+  // the number of requests running, and the requests waiting for a turn in arrival order, which
+  // are both guarded by this object's lock
+  private int running = 0;
+  private final ArrayDeque<Request> waiting = new ArrayDeque<>();
+
+  // a request that has been submitted, along with where to run it
+  private static class Request {
+    final Executor executor;
+    final Runnable task;
+    final Runnable onShed;
+
+    Request(Executor executor, Runnable task, Runnable onShed) {
+      this.executor = executor;
+      this.task = task;
+      this.onShed = onShed;
+    }
+  }
+
+  /**
+   * Creates the limits for one kind of request.
+   *
+   * @param name          the name of this kind of request, used to label its metrics
+   * @param maxRunning    the number of these requests that can run at the same time
+   * @param maxWaiting    the number of these requests that can wait for a turn to run
+   * @param maxWaitMillis the longest that a request waits for a turn before it is shed
+   * @throws IllegalArgumentException if maxRunning is not positive, or maxWaiting or maxWaitMillis
+   *                                  are negative
+   */
+  public AdmissionControl(String name, int maxRunning, int maxWaiting, long maxWaitMillis) {
+    if (maxRunning < 1 || maxWaiting < 0 || maxWaitMillis < 0)
+      throw new IllegalArgumentException("Invalid admission limits for " + name);
+    this.maxRunning = maxRunning;
+    this.maxWaiting = maxWaiting;
+    this.maxWaitMillis = maxWaitMillis;
+    this.shed = Metrics.counter("campus_admission_shed_total",
+        "Requests rejected because too many of their kind were already running or waiting.",
+        "endpoint=\"" + name + "\"");
+  }
+
+  /**
+   * Runs a request on an executor as soon as it is admitted, without blocking the calling thread.
+   * A request that cannot run yet waits in the queue, and one that is shed (because the queue is
+   * full, its wait ran out, or the executor rejected it) has onShed run instead, on whichever
+   * thread shed it.
+   *
+   * @param executor the executor to run the request on
+   * @param task     the request
+   * @param onShed   answers the request when it is shed
+   */
+  public void submit(Executor executor, Runnable task, Runnable onShed) {
+    Request request = new Request(executor, task, onShed);
+    synchronized (this) {
+      if (running >= maxRunning) {
+        // only wait when there is room in the queue
+        if (maxWaitMillis == 0 || waiting.size() >= maxWaiting) {
+          shed(request);
+          return;
+        }
+        waiting.add(request);
+        timeouts.schedule(() -> expire(request), maxWaitMillis, TimeUnit.MILLISECONDS);
+        return;
+      }
+      running++;
+    }
+    start(request);
+  }
+
+  /**
+   * @return the number of requests that have been shed
+   */
+  public long getShedCount() {
+    return shed.get();
+  }
+
+  // hands an admitted request to its executor, and passes its turn on once it completes
+  private void start(Request request) {
+    try {
+      request.executor.execute(() -> {
+        try {
+          request.task.run();
+        } finally {
+          exit();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      exit();
+      shed(request);
+    }
+  }
+
+  // marks a request as complete, starting the longest waiting request in its place
+  private void exit() {
+    Request next;
+    synchronized (this) {
+      next = waiting.poll();
+      if (next == null) {
+        running--;
+        return;
+      }
+    }
+    start(next);
+  }
+
+  // sheds a request that is still waiting once its wait runs out
+  private void expire(Request request) {
+    synchronized (this) {
+      if (!waiting.remove(request))
+        return; // it was started in time
+    }
+    shed(request);
+  }
+
+  // rejects a request
+  private void shed(Request request) {
+    shed.increment();
+    request.onShed.run();
+  }
+}
@@ -0,0 +1,378 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * A graph that answers shortest path queries from a table of the shortest paths between every pair
+ * of its nodes, which is computed once when it is created. Path queries then take time proportional
+ * to the length of the path found, without any search. Every other method is forwarded to the
+ * graph being wrapped.
+ *
+ * The table is filled by a full single-source search from every node, run in parallel on the
+ * common fork-join pool, and stored in flat primitive arrays indexed by (source, target) pair: the
+ * cost of each shortest path, the id of the edge into the target along it, and the order in which
+ * the target was settled. Each edge on any of those paths is stored once, with its source and its
+ * data, so a path is read back in time proportional to its length without looking up any edges in
+ * the wrapped graph. So the table answers with exactly the paths and settle order that searching
+ * the wrapped graph would give. It takes 16 bytes per pair of nodes, so a node count limit must be
+ * given when creating one.
+ *
+ * Changing the graph through this wrapper, or directly when it is a BaseGraph, leaves the table out
+ * of date. Queries are then forwarded to the wrapped graph instead, until a new wrapper is created.
+ */
+public class AllPairsGraph<NodeType, EdgeType extends Number>
+    implements GraphADT<NodeType, EdgeType> {
+  // bytes used for each pair of nodes: a double cost, and int edge id and settle order
+  private static final int BYTES_PER_PAIR = 8 + 4 + 4;
+
+  private final GraphADT<NodeType, EdgeType> graph;
+  private final List<NodeType> nodes; // the data of each node, by its index in the table
+  private final HashMap<NodeType, Integer> indexes = new HashMap<>();
+  private final int nodeCount;
+  // each indexed by source * nodeCount + target
+  private final double[] costs; // the cost of the shortest path, or infinity when unreachable
+  private final int[] inEdges; // the id of the edge into target along the path, or -1
+  private final int[] ranks; // the order in which target was settled, or -1 when unreachable
+  // each indexed by edge id, for the edges along any of the paths
+  private final int[] edgeSources; // the index of the node that the edge leaves
+  private final Object[] edgeData; // the data of the edge
+  // the wrapped graph's modification count when the table was built (when it has one), and
+  // whether this graph has been changed since
+  private final int builtModCount;
+  private volatile boolean modified = false;
+
+  /**
+   * Computes the shortest paths between every pair of nodes in a graph.
+   *
+   * @param graph    the graph to wrap, which should not be changed while the table is built
+   * @param maxNodes the most nodes that a table will be built for
+   * @throws IllegalArgumentException if graph has more than maxNodes nodes
+   */
+  public AllPairsGraph(GraphADT<NodeType, EdgeType> graph, int maxNodes) {
+    this.graph = graph;
+    this.builtModCount = modCountOf(graph);
+    this.nodes = new ArrayList<>(graph.getAllNodes());
+    this.nodeCount = nodes.size();
+    if (nodeCount > maxNodes || (long) nodeCount * nodeCount > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Refusing to build an all-pairs table for " + nodeCount
+          + " nodes (" + estimateBytes(nodeCount) / (1 << 20) + " MiB), which is more than the "
+          + "limit of " + maxNodes + " nodes");
+    }
+    for (int i = 0; i < nodeCount; i++)
+      indexes.put(nodes.get(i), i);
+    costs = new double[nodeCount * nodeCount];
+    inEdges = new int[nodeCount * nodeCount];
+    ranks = new int[nodeCount * nodeCount];
+    IntStream.range(0, nodeCount).parallel().forEach(this::fillRow);
+
+    // number the distinct predecessors of each target within its column of the table, and then
+    // give the edges from them ids one column after another
+    int[][] columnSources = numberPredecessors();
+    int[] firstEdges = new int[nodeCount + 1];
+    for (int target = 0; target < nodeCount; target++)
+      firstEdges[target + 1] = firstEdges[target] + columnSources[target].length;
+    edgeSources = new int[firstEdges[nodeCount]];
+    edgeData = new Object[firstEdges[nodeCount]];
+    for (int target = 0; target < nodeCount; target++) {
+      for (int i = 0; i < columnSources[target].length; i++) {
+        int source = columnSources[target][i];
+        edgeSources[firstEdges[target] + i] = source;
+        edgeData[firstEdges[target] + i] = graph.getEdge(nodes.get(source), nodes.get(target));
+      }
+    }
+    IntStream.range(0, nodeCount).parallel().forEach(source -> {
+      int row = source * nodeCount;
+      for (int target = 0; target < nodeCount; target++) {
+        if (inEdges[row + target] >= 0)
+          inEdges[row + target] += firstEdges[target];
+      }
+    });
+  }
+
+  /**
+   * Returns the memory that a table for a graph would take, not counting the graph itself.
+   *
+   * @param nodeCount the number of nodes in the graph
+   * @return the size of the table's arrays in bytes
+   */
+  public static long estimateBytes(int nodeCount) {
+    return (long) nodeCount * nodeCount * BYTES_PER_PAIR;
+  }
+
+  /**
+   * @return the memory that this graph's table takes, in bytes
+   */
+  public long getMemoryBytes() {
+    return estimateBytes(nodeCount);
+  }
+
+  /**
+   * @return true if the table still matches the wrapped graph, so that queries are answered from it
+   */
+  public boolean isCurrent() {
+    return !modified && modCountOf(graph) == builtModCount;
+  }
+
+  // fills the table's row for one source with the results of a full search from it, with the
+  // index of each target's predecessor in place of its edge id for now
+  private void fillRow(int source) {
+    int row = source * nodeCount;
+    Arrays.fill(costs, row, row + nodeCount, Double.POSITIVE_INFINITY);
+    Arrays.fill(inEdges, row, row + nodeCount, -1);
+    Arrays.fill(ranks, row, row + nodeCount, -1);
+    ShortestPathTree<NodeType, EdgeType> tree = graph.shortestPathTree(nodes.get(source));
+    int rank = 0;
+    for (NodeType node : tree.getNodes()) {
+      int target = indexes.get(node);
+      NodeType predecessor = tree.predecessorOf(node);
+      costs[row + target] = tree.costTo(node);
+      inEdges[row + target] = predecessor == null ? -1 : indexes.get(predecessor);
+      ranks[row + target] = rank++;
+    }
+  }
+
+  // replaces the predecessor index of each target in the table with the position of that
+  // predecessor among the target's distinct predecessors, and returns those predecessors in order
+  // for each target. The table is read row by row, and only a few predecessors are kept per target.
+  private int[][] numberPredecessors() {
+    int[][] sources = new int[nodeCount][];
+    int[] counts = new int[nodeCount];
+    for (int target = 0; target < nodeCount; target++)
+      sources[target] = new int[4];
+    for (int row = 0; row < inEdges.length; row += nodeCount) {
+      for (int target = 0; target < nodeCount; target++) {
+        int predecessor = inEdges[row + target];
+        if (predecessor < 0)
+          continue;
+        int i = 0;
+        while (i < counts[target] && sources[target][i] != predecessor)
+          i++;
+        if (i == counts[target]) {
+          if (i == sources[target].length)
+            sources[target] = Arrays.copyOf(sources[target], i * 2);
+          sources[target][counts[target]++] = predecessor;
+        }
+        inEdges[row + target] = i;
+      }
+    }
+    for (int target = 0; target < nodeCount; target++)
+      sources[target] = Arrays.copyOf(sources[target], counts[target]);
+    return sources;
+  }
+
+  @Override
+  public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+    if (!isCurrent())
+      return graph.shortestPathData(start, end);
+    int row = rowOf(start);
+    int target = reachableIndexOf(row, start, end);
+    List<NodeType> path = new ArrayList<>();
+    for (int i = target; i >= 0; i = predecessorOf(row, i))
+      path.add(nodes.get(i));
+    Collections.reverse(path);
+    return path;
+  }
+
+  @Override
+  public double shortestPathCost(NodeType start, NodeType end) {
+    if (!isCurrent())
+      return graph.shortestPathCost(start, end);
+    int row = rowOf(start);
+    return costs[row + reachableIndexOf(row, start, end)];
+  }
+
+  /**
+   * Reads the path from the table's row for start, without building a tree.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean shortestPath(NodeType start, NodeType end, List<NodeType> pathNodes,
+      List<EdgeType> pathEdges) {
+    if (!isCurrent())
+      return graph.shortestPath(start, end, pathNodes, pathEdges);
+    Integer source = start == null ? null : indexes.get(start);
+    Integer target = end == null ? null : indexes.get(end);
+    if (source == null || target == null || ranks[source * nodeCount + target] < 0)
+      return false;
+    int row = source * nodeCount;
+    // walk back from end, then put what was added in order from start
+    int firstNode = pathNodes.size();
+    int firstEdge = pathEdges.size();
+    for (int i = target; inEdges[row + i] >= 0; i = edgeSources[inEdges[row + i]]) {
+      pathNodes.add(nodes.get(i));
+      pathEdges.add((EdgeType) edgeData[inEdges[row + i]]);
+    }
+    pathNodes.add(start);
+    Collections.reverse(pathNodes.subList(firstNode, pathNodes.size()));
+    Collections.reverse(pathEdges.subList(firstEdge, pathEdges.size()));
+    return true;
+  }
+
+  /**
+   * Returns a tree with the shortest paths from start to each of the ends, read from the table.
+   * Only the nodes along those paths are included.
+   */
+  @Override
+  public ShortestPathTree<NodeType, EdgeType> shortestPathTree(NodeType start,
+      Collection<NodeType> ends) {
+    if (!isCurrent())
+      return graph.shortestPathTree(start, ends);
+    int row = rowOf(start);
+    // gather every node along the paths to the ends, and settle them in their original order
+    HashSet<Integer> onPath = new HashSet<>();
+    List<Integer> settled = new ArrayList<>();
+    for (NodeType end : ends) {
+      Integer target = indexes.get(end);
+      if (target == null || ranks[row + target] < 0)
+        continue;
+      for (int i = target; i >= 0 && onPath.add(i); i = predecessorOf(row, i))
+        settled.add(i);
+    }
+    settled.sort((a, b) -> Integer.compare(ranks[row + a], ranks[row + b]));
+    return treeOf(row, start, settled);
+  }
+
+  /**
+   * Returns a tree with the shortest paths from start to every node it can reach, read from the
+   * table.
+   */
+  @Override
+  public ShortestPathTree<NodeType, EdgeType> shortestPathTree(NodeType start) {
+    if (!isCurrent())
+      return graph.shortestPathTree(start);
+    int row = rowOf(start);
+    Integer[] settled = new Integer[nodeCount];
+    int reached = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      if (ranks[row + i] >= 0) {
+        settled[ranks[row + i]] = i;
+        reached++;
+      }
+    }
+    return treeOf(row, start, Arrays.asList(settled).subList(0, reached));
+  }
+
+  /**
+   * Forwarded to the wrapped graph, since a search that stops after the nearest targets visits
+   * fewer nodes than reading a whole row of the table in settle order would.
+   */
+  @Override
+  public ShortestPathTree<NodeType, EdgeType> nearestTree(NodeType start,
+      Predicate<NodeType> isTarget, int k) {
+    return graph.nearestTree(start, isTarget, k);
+  }
+
+  /**
+   * Forwarded to the wrapped graph, since a search bounded by cost visits fewer nodes than
+   * reading a whole row of the table would.
+   */
+  @Override
+  public ShortestPathTree<NodeType, EdgeType> boundedTree(NodeType start, double maxCost) {
+    return graph.boundedTree(start, maxCost);
+  }
+
+  // builds a tree from start by settling the nodes with these indexes, in order
+  @SuppressWarnings("unchecked")
+  private ShortestPathTree<NodeType, EdgeType> treeOf(int row, NodeType start,
+      List<Integer> settled) {
+    ShortestPathTree<NodeType, EdgeType> tree = new ShortestPathTree<>(start);
+    for (int i : settled) {
+      int edge = inEdges[row + i];
+      if (edge < 0)
+        continue; // the source, which every tree starts with
+      tree.settle(nodes.get(i), nodes.get(edgeSources[edge]), (EdgeType) edgeData[edge],
+          costs[row + i]);
+    }
+    return tree;
+  }
+
+  // returns the index of the node before target along the path in a row, or -1 for its source
+  private int predecessorOf(int row, int target) {
+    int edge = inEdges[row + target];
+    return edge < 0 ? -1 : edgeSources[edge];
+  }
+
+  // returns the index of the first entry in the table's row for start
+  private int rowOf(NodeType start) {
+    Integer source = start == null ? null : indexes.get(start);
+    if (source == null)
+      throw new NoSuchElementException("Start node " + start + " does not exist.");
+    return source * nodeCount;
+  }
+
+  // returns the index of end, which must be reachable from the source of the row
+  private int reachableIndexOf(int row, NodeType start, NodeType end) {
+    Integer target = end == null ? null : indexes.get(end);
+    if (target == null)
+      throw new NoSuchElementException("End node " + end + " does not exist.");
+    if (ranks[row + target] < 0)
+      throw new NoSuchElementException("No path from " + start + " to " + end);
+    return target;
+  }
+
+  // returns the modification count of a graph that keeps one, or 0 for any other graph
+  private static int modCountOf(GraphADT<?, ?> graph) {
+    return graph instanceof BaseGraph ? ((BaseGraph<?, ?>) graph).getModCount() : 0;
+  }
+
+  @Override
+  public boolean insertNode(NodeType data) {
+    modified = true;
+    return graph.insertNode(data);
+  }
+
+  @Override
+  public boolean removeNode(NodeType data) {
+    modified = true;
+    return graph.removeNode(data);
+  }
+
+  @Override
+  public boolean containsNode(NodeType data) {
+    return graph.containsNode(data);
+  }
+
+  @Override
+  public List<NodeType> getAllNodes() {
+    return graph.getAllNodes();
+  }
+
+  @Override
+  public int getNodeCount() {
+    return graph.getNodeCount();
+  }
+
+  @Override
+  public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+    modified = true;
+    return graph.insertEdge(pred, succ, weight);
+  }
+
+  @Override
+  public boolean removeEdge(NodeType pred, NodeType succ) {
+    modified = true;
+    return graph.removeEdge(pred, succ);
+  }
+
+  @Override
+  public boolean containsEdge(NodeType pred, NodeType succ) {
+    return graph.containsEdge(pred, succ);
+  }
+
+  @Override
+  public EdgeType getEdge(NodeType pred, NodeType succ) {
+    return graph.getEdge(pred, succ);
+  }
+
+  @Override
+  public int getEdgeCount() {
+    return graph.getEdgeCount();
+  }
+}
@@ -1,59 +1,181 @@
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Backend - CS400 Project 2
  */
 public class Backend implements BackendInterface {
-  private GraphADT<String, Double> graph;
+  // the graph that queries are answered from: either the graph passed to the constructor, or a
+  // read-only MappedGraph after a snapshot is loaded
+  private volatile GraphADT<String, Double> graph;
+  // the graph passed to the constructor, which dot files are loaded into
+  private final GraphADT<String, Double> editableGraph;
+  // search index over the location names, rebuilt whenever graph data is loaded
+  private volatile LocationIndex locationIndex = null;
+  // number of chunks that dot files are split into and read in parallel, or 1 to read them in one
+  // pass
+  private final int loadChunks;
+  // the most locations that a table of the shortest paths between every pair of locations is
+  // built for when graph data is loaded, or 0 to never build one
+  private final int allPairsMaxNodes;
+  // the file that a contraction hierarchy of each loaded graph is saved to and read back from, or
+  // null to never build one
+  private final String hierarchyFile;
 
   public Backend(GraphADT<String, Double> graph) {
+    this(graph, 1);
+  }
+
+  public Backend(GraphADT<String, Double> graph, int loadChunks) {
+    this(graph, loadChunks, 0);
+  }
+
+  /**
+   * Creates a backend that reads dot files in parallel, by splitting each file into chunks at line
+   * boundaries (see DotLexer.parseParallel). Only use this for dot files that have one statement per
+   * line, like those exported from other tools; a statement, quoted id, or comment that continues
+   * onto another line may be split between two chunks and fail to load.
+   *
+   * It can also precompute the shortest paths between every pair of locations whenever graph data
+   * is loaded (see AllPairsGraph), so that path queries are answered without searching. That table
+   * takes 16 bytes per pair of locations, so it is only built for graphs with at most
+   * allPairsMaxNodes locations.
+   *
+   * @param graph            the graph that dot files are loaded into
+   * @param loadChunks       the number of chunks to split each dot file into, or 1 to read it in
+   *                         one pass
+   * @param allPairsMaxNodes the most locations to build an all-pairs table for, or 0 for none
+   */
+  public Backend(GraphADT<String, Double> graph, int loadChunks, int allPairsMaxNodes) {
+    this(graph, loadChunks, allPairsMaxNodes, null);
+  }
+
+  /**
+   * Creates a backend like the one above, which also answers path queries on graphs too large for
+   * an all-pairs table from a contraction hierarchy (see ContractionHierarchyGraph), when the
+   * graph passed in is a DijkstraGraph. Each hierarchy is saved to hierarchyFile once it is built,
+   * and read back from there instead of being built again when the same graph is loaded later.
+   * Snapshots are always searched directly, without a hierarchy.
+   *
+   * @param graph            the graph that dot files are loaded into
+   * @param loadChunks       the number of chunks to split each dot file into, or 1 to read it in
+   *                         one pass
+   * @param allPairsMaxNodes the most locations to build an all-pairs table for, or 0 for none
+   * @param hierarchyFile    the file to save contraction hierarchies to and read them back from,
+   *                         or null to never build one
+   */
+  public Backend(GraphADT<String, Double> graph, int loadChunks, int allPairsMaxNodes,
+      String hierarchyFile) {
+    if (loadChunks < 1)
+      throw new IllegalArgumentException("Expected at least one chunk, but got " + loadChunks);
     this.graph = graph;
+    this.editableGraph = graph;
+    this.loadChunks = loadChunks;
+    this.allPairsMaxNodes = allPairsMaxNodes;
+    this.hierarchyFile = hierarchyFile;
   }
 
   /**
    * Loads graph data from a dot file.  If a graph was previously loaded, this method should first
    * delete the contents (nodes and edges) of the existing graph before loading a new one.
    *
-   * @param filename the path to a dot file to read graph data from
+   * The file may also be a binary snapshot compiled by GraphSnapshot, in which case it is memory
+   * mapped and queries are answered straight from it, instead of from the graph passed to this
+   * backend's constructor (until a dot file is loaded again).
+   *
+   * A backend created with more than one load chunk reads dot files in parallel, with the same
+   * result as reading them in one pass.
+   *
+   * @param filename the path to a dot file (or a snapshot) to read graph data from
    * @throws IOException if there was any problem reading from this file
    */
   @Override
   public void loadGraphData(String filename) throws IOException {
+    FileChannel channel;
     try {
-      List<String> lines = Files.readAllLines(Paths.get(filename));
-      graph.getAllNodes().forEach(node -> graph.removeNode(node)); //Clears existing graph
-
-      //Insert data into graph using enhanced for loop
-      for (String line : lines) {
-        line = line.trim();
-        if (line.isEmpty() || !line.contains("->") || !line.contains("[seconds=")) {
-          continue; // Skip invalid lines
-        }
-
-        // Extract node names
-        String[] parts = line.split("->");
-        String location1 = parts[0].trim().replaceAll("^\"|\"$", ""); // Removes quotes
-        String[] rightParts = parts[1].trim().split("\\[seconds=");
-
-        if (rightParts.length < 2)
-          continue;
-
-        String location2 = rightParts[0].trim().replaceAll("^\"|\"$", ""); // Removes quotes
-        double time = Double.parseDouble(rightParts[1].replace("];", "").trim()); // Saves the time
-
-        // Insert nodes and edge
-        graph.insertNode(location1);
-        graph.insertNode(location2);
-        graph.insertEdge(location1, location2, time);
-      }
+      channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
     } catch (IOException e) {
       throw new IOException(
           "Error reading file: '" + filename + "'. Please check that the file path is correct.", e);
     }
+    try (channel) {
+      if (GraphSnapshot.isSnapshot(filename)) {
+        MappedGraph mapped = new MappedGraph(filename);
+        // exact names are found in the snapshot itself, so the index that resolves near misses is
+        // only built from every name if one is ever needed
+        locationIndex = null;
+        // a contraction hierarchy is only built from a DijkstraGraph's own nodes and edges
+        if (hierarchyFile != null)
+          System.err.println("Not using a contraction hierarchy for snapshot '" + filename
+              + "', which is searched directly.");
+        graph = withAllPairsTable(mapped);
+        return;
+      }
+      // Collect each weighted edge from the file, in file order either way, and then replace the
+      // existing graph's contents with them all at once
+      GraphBuilder<String, Double> builder = new GraphBuilder<>();
+      DotLexer.EdgeSink sink = builder::addEdge;
+      if (loadChunks > 1)
+        DotLexer.parseParallel(filename, "seconds", loadChunks, sink);
+      else
+        new DotLexer(channel, 0, channel.size(), "seconds").parse(sink);
+      GraphADT<String, Double> graph = editableGraph;
+      builder.build(graph);
+      locationIndex = new LocationIndex(graph.getAllNodes());
+      GraphADT<String, Double> table = withAllPairsTable(graph);
+      this.graph = table != graph ? table : withContractionHierarchy(graph);
+    }
+  }
+
+  // wraps a newly loaded graph in a table of its all-pairs shortest paths, when it is small enough
+  private GraphADT<String, Double> withAllPairsTable(GraphADT<String, Double> graph) {
+    if (allPairsMaxNodes <= 0)
+      return graph;
+    if (graph.getNodeCount() > allPairsMaxNodes) {
+      System.err.println("Not building an all-pairs table for " + graph.getNodeCount()
+          + " locations, which is more than the limit of " + allPairsMaxNodes + ".");
+      return graph;
+    }
+    return new AllPairsGraph<>(graph, allPairsMaxNodes);
+  }
+
+  // wraps a newly loaded graph in a contraction hierarchy, read back from the hierarchy file when
+  // it was saved there for this same graph, or otherwise built and then saved there
+  private GraphADT<String, Double> withContractionHierarchy(GraphADT<String, Double> graph) {
+    if (hierarchyFile == null || !(graph instanceof DijkstraGraph))
+      return graph;
+    DijkstraGraph<String, Double> searched = (DijkstraGraph<String, Double>) graph;
+    if (Files.exists(Paths.get(hierarchyFile))) {
+      try {
+        return ContractionHierarchyGraph.load(hierarchyFile, searched);
+      } catch (IOException e) {
+        System.err.println("Building a new contraction hierarchy: " + e.getMessage());
+      }
+    }
+    ContractionHierarchyGraph<String, Double> hierarchy = new ContractionHierarchyGraph<>(searched);
+    try {
+      hierarchy.save(hierarchyFile);
+    } catch (IOException e) {
+      System.err.println("Could not save the contraction hierarchy: " + e.getMessage());
+    }
+    return hierarchy;
+  }
+
+  /**
+   * @return the graph that queries are currently answered from
+   */
+  public GraphADT<String, Double> getGraph() {
+    return graph;
   }
 
   /**
@@ -77,26 +199,7 @@ public class Backend implements BackendInterface {
    */
   @Override
   public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
-    try {
-      // Attempt to retrieve the shortest path between the given locations
-      return graph.shortestPathData(startLocation, endLocation);
-    } catch (NoSuchElementException e) {
-      // Check if the graph is missing the start or end location
-      boolean startExists = graph.getAllNodes().contains(startLocation);
-      boolean endExists = graph.getAllNodes().contains(endLocation);
-
-      if (!startExists && !endExists) {
-        System.err.println("Error: Both start and end locations are invalid.");
-      } else if (!startExists) {
-        System.err.println("Error: Start location '" + startLocation + "' does not exist.");
-      } else if (!endExists) {
-        System.err.println("Error: End location '" + endLocation + "' does not exist.");
-      } else {
-        System.err.println("Error: No path found between '" + startLocation + "' and '" + endLocation + "'.");
-      }
-
-      return new ArrayList<>();
-    }
+    return new ArrayList<>(findAndReport(startLocation, endLocation).getLocations());
   }
 
   /**
@@ -110,31 +213,62 @@ public class Backend implements BackendInterface {
    */
   @Override
   public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
-    // Check if the start location exists in the graph
-    if (!graph.getAllNodes().contains(startLocation)) {
-      System.err.println("Error: Start location '" + startLocation + "' does not exist.");
-      return new ArrayList<>();
-    }
+    return new ArrayList<>(findAndReport(startLocation, endLocation).getTimes());
+  }
 
-    List<String> path = findLocationsOnShortestPath(startLocation, endLocation);
-    List<Double> weights = new ArrayList<>();
+  /**
+   * Finds the shortest path between two locations with a single search. The times of its legs are
+   * read from the edges that the search settled, rather than looked up again afterwards, and only
+   * the path itself is kept rather than a tree of every location the search visited.
+   *
+   * @param startLocation the start location of the path
+   * @param endLocation   the end location of the path
+   * @return the path found, or the reason that there is none
+   */
+  @Override
+  public PathResult findShortestPath(String startLocation, String endLocation) {
+    GraphADT<String, Double> current = graph;
+    List<String> locations = new ArrayList<>();
+    List<Double> times = new ArrayList<>();
+    if (!current.containsNode(startLocation) || !current.containsNode(endLocation)
+        || !current.shortestPath(startLocation, endLocation, locations, times)) {
+      return PathResult.failed(startLocation, endLocation, failureFor(startLocation, endLocation));
+    }
+    // added up from the start, just as the search added up the cost of the path
+    double totalTime = 0;
+    for (double time : times) {
+      totalTime += time;
+    }
+    return PathResult.found(startLocation, endLocation, locations, times, totalTime);
+  }
 
-    // Loop through each pair of adjacent locations on the path
-    for (int i = 0; i < path.size() - 1; i++) {
-      try {
-        // Add the weight of the edge between the current location and the next to the weights list
-        weights.add(graph.getEdge(path.get(i), path.get(i + 1))); //Try adding edge weight to list
-      } catch (NoSuchElementException e) {
-        // If the edge doesn't exist, return an empty list
-        return new ArrayList<>();
-      }
+  // finds the shortest path between two locations, printing the reason when there is none
+  private PathResult findAndReport(String startLocation, String endLocation) {
+    PathResult result = findShortestPath(startLocation, endLocation);
+    switch (result.getFailure()) {
+      case START_AND_END_NOT_FOUND:
+        System.err.println("Error: Both start and end locations are invalid.");
+        break;
+      case START_NOT_FOUND:
+        System.err.println("Error: Start location '" + startLocation + "' does not exist.");
+        break;
+      case END_NOT_FOUND:
+        System.err.println("Error: End location '" + endLocation + "' does not exist.");
+        break;
+      case NO_PATH:
+        System.err.println("Error: No path found between '" + startLocation + "' and '" + endLocation + "'.");
+        break;
+      default:
+        break;
     }
-    return weights;
+    return result;
   }
 
   /**
    * Returns the longest list of locations along any shortest path that starts from startLocation
-   * and ends at any of the reachable destinations in the graph.
+   * and ends at any of the reachable destinations in the graph. A single search from startLocation
+   * finds the shortest paths to every reachable destination, and the path with the most hops is
+   * returned (or, among equally long paths, the one with the lowest cost).
    *
    * @param startLocation the location to search through paths leaving from
    * @return the longest list of locations found on any shortest path that starts at the specified
@@ -145,24 +279,195 @@ public class Backend implements BackendInterface {
   @Override
   public List<String> getLongestLocationListFrom(String startLocation)
       throws NoSuchElementException {
-    List<String> longestPath = new ArrayList<>();
-
-    // Iterate over every node in the graph
-    for (String destination : graph.getAllNodes()) {
-      // Skip the case where the destination is the same as the starting point
-      if (!destination.equals(startLocation)) {
-        // Find the shortest path from the startLocation to the current destination
-        List<String> path = findLocationsOnShortestPath(startLocation, destination);
-        // If this path is longer than the current longest path, update longestPath
-        if (path.size() > longestPath.size()) {
-          longestPath = path;
-        }
+    if (!graph.containsNode(startLocation)) {
+      throw new NoSuchElementException("Start location '" + startLocation + "' does not exist.");
+    }
+    ShortestPathTree<String, Double> tree = graph.shortestPathTree(startLocation);
+
+    // Nodes are settled in order of cost, so the first with the most hops wins any tie
+    String farthest = null;
+    int mostHops = 0;
+    for (String destination : tree.getNodes()) {
+      int hops = tree.hopsTo(destination);
+      if (hops > mostHops) {
+        farthest = destination;
+        mostHops = hops;
       }
     }
-    if (longestPath.isEmpty()) {
+    if (farthest == null) {
       throw new NoSuchElementException("No reachable locations from " + startLocation);
     }
-    return longestPath;
+    return tree.pathTo(farthest);
   }
-}
 
+  /**
+   * Computes the shortest paths for many (start, end) pairs at once. The pairs are grouped by start
+   * location, and a single search from each distinct start location (run in parallel on the common
+   * fork-join pool) finds the paths to all of its end locations. Results are produced in the same
+   * order as the pairs, and each becomes available as soon as its own start location's search is
+   * complete.
+   *
+   * @param starts the start location of each pair
+   * @param ends   the end location of each pair, at the same index as its start
+   * @return a stream with the result for each pair, in order
+   * @throws IllegalArgumentException if starts and ends differ in size
+   */
+  @Override
+  public Stream<PathResult> findShortestPaths(List<String> starts, List<String> ends) {
+    if (starts.size() != ends.size()) {
+      throw new IllegalArgumentException(
+          "Expected one end location per start location, but got " + starts.size() + " starts and "
+              + ends.size() + " ends.");
+    }
+
+    // Group the end locations of the pairs by their start location
+    Map<String, Set<String>> endsByStart = new HashMap<>();
+    for (int i = 0; i < starts.size(); i++) {
+      endsByStart.computeIfAbsent(starts.get(i), start -> new HashSet<>()).add(ends.get(i));
+    }
+
+    // Start one search for each distinct start location that exists in the graph
+    Map<String, ForkJoinTask<ShortestPathTree<String, Double>>> searches = new HashMap<>();
+    for (Map.Entry<String, Set<String>> entry : endsByStart.entrySet()) {
+      if (graph.containsNode(entry.getKey())) {
+        searches.put(entry.getKey(), ForkJoinPool.commonPool()
+            .submit(() -> graph.shortestPathTree(entry.getKey(), entry.getValue())));
+      }
+    }
+
+    // Produce results in request order, each waiting only on its own start location's search
+    return IntStream.range(0, starts.size()).mapToObj(i -> {
+      ForkJoinTask<ShortestPathTree<String, Double>> search = searches.get(starts.get(i));
+      if (search == null) {
+        return PathResult.failed(starts.get(i), ends.get(i), failureFor(starts.get(i), ends.get(i)));
+      }
+      return resultFrom(search.join(), ends.get(i));
+    });
+  }
+
+  /**
+   * Finds the candidate locations nearest to startLocation, with a single search that stops as
+   * soon as k candidates have been settled. Since the search settles locations in order of their
+   * walking time from startLocation, the candidates it settled are already sorted nearest first.
+   *
+   * @param startLocation the location to find the nearest candidates to
+   * @param candidates    the locations to choose from, or null to choose from every location
+   * @param k             the most locations to find
+   * @return the shortest paths to up to k candidates other than startLocation, nearest first
+   * @throws NoSuchElementException   if startLocation does not exist
+   * @throws IllegalArgumentException if k is less than 1
+   */
+  @Override
+  public List<PathResult> findNearestLocations(String startLocation,
+      Collection<String> candidates, int k) {
+    if (k < 1) {
+      throw new IllegalArgumentException("Expected to find at least one location, but got " + k);
+    }
+    if (!graph.containsNode(startLocation)) {
+      throw new NoSuchElementException("Start location '" + startLocation + "' does not exist.");
+    }
+    Predicate<String> isCandidate =
+        candidates == null ? location -> true : new HashSet<>(candidates)::contains;
+    ShortestPathTree<String, Double> tree = graph.nearestTree(startLocation, isCandidate, k);
+
+    // the tree starts with startLocation, followed by the settled locations nearest first
+    List<PathResult> nearest = new ArrayList<>();
+    List<String> settled = tree.getNodes();
+    for (int i = 1; i < settled.size() && nearest.size() < k; i++) {
+      if (isCandidate.test(settled.get(i))) {
+        nearest.add(resultFrom(tree, settled.get(i)));
+      }
+    }
+    return nearest;
+  }
+
+  /**
+   * Finds every location within a walking time of startLocation, with a single search that never
+   * follows a path past that time.
+   *
+   * @param startLocation the location to walk from
+   * @param seconds       the most walking time to include
+   * @return the walking time in seconds to each location within the budget, other than
+   * startLocation, in order of walking time
+   * @throws NoSuchElementException   if startLocation does not exist
+   * @throws IllegalArgumentException if seconds is negative or not a number
+   */
+  @Override
+  public Map<String, Double> findLocationsWithin(String startLocation, double seconds) {
+    if (!(seconds >= 0)) {
+      throw new IllegalArgumentException("Expected a walking time of at least 0 seconds, but got "
+          + seconds);
+    }
+    if (!graph.containsNode(startLocation)) {
+      throw new NoSuchElementException("Start location '" + startLocation + "' does not exist.");
+    }
+    ShortestPathTree<String, Double> tree = graph.boundedTree(startLocation, seconds);
+    Map<String, Double> within = new LinkedHashMap<>();
+    List<String> settled = tree.getNodes();
+    for (int i = 1; i < settled.size(); i++) {
+      within.put(settled.get(i), tree.costTo(settled.get(i)));
+    }
+    return within;
+  }
+
+  // creates the result for the path to endLocation within a tree of shortest paths
+  private PathResult resultFrom(ShortestPathTree<String, Double> tree, String endLocation) {
+    String startLocation = tree.getSource();
+    if (!tree.contains(endLocation)) {
+      return PathResult.failed(startLocation, endLocation, failureFor(startLocation, endLocation));
+    }
+    return PathResult.found(startLocation, endLocation, tree.pathTo(endLocation),
+        tree.edgesTo(endLocation), tree.costTo(endLocation));
+  }
+
+  // determines why no path was found between two locations
+  private PathResult.Failure failureFor(String startLocation, String endLocation) {
+    boolean startExists = graph.containsNode(startLocation);
+    boolean endExists = graph.containsNode(endLocation);
+    if (!startExists && !endExists)
+      return PathResult.Failure.START_AND_END_NOT_FOUND;
+    if (!startExists)
+      return PathResult.Failure.START_NOT_FOUND;
+    if (!endExists)
+      return PathResult.Failure.END_NOT_FOUND;
+    return PathResult.Failure.NO_PATH;
+  }
+
+  /**
+   * Resolves a location name that may differ from an actual location's name by case, surrounding
+   * spaces, or a small typo.
+   *
+   * @param name the location name to resolve
+   * @return the name of the matching location, or null if there is no single close match
+   */
+  @Override
+  public String resolveLocation(String name) {
+    if (graph.containsNode(name))
+      return name;
+    return getLocationIndex().resolve(name);
+  }
+
+  /**
+   * Returns location names starting with the query (ignoring case), followed by the names most
+   * similar to it.
+   *
+   * @param query the text typed so far
+   * @param limit the most names to return
+   * @return up to limit suggested location names, best first
+   */
+  @Override
+  public List<String> suggestLocations(String query, int limit) {
+    return getLocationIndex().suggest(query, limit);
+  }
+
+  // returns the location index, building it first if it was not built when the graph data was
+  // loaded (as for a snapshot, or graph data that was never loaded through this backend)
+  private LocationIndex getLocationIndex() {
+    LocationIndex index = locationIndex;
+    if (index == null) {
+      index = new LocationIndex(graph.getAllNodes());
+      locationIndex = index;
+    }
+    return index;
+  }
+}
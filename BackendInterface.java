@@ -1,6 +1,9 @@
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.stream.Stream;
 
 /**
  * This is the interface that a backend developer will implement, so that
@@ -64,4 +67,80 @@ public interface BackendInterface {
    */
   public List<String> getLongestLocationListFrom(String startLocation) throws NoSuchElementException;
 
+  /**
+   * Finds the shortest path between two locations with a single search, and
+   * returns everything needed to describe it: the locations along the path,
+   * the walking time of each leg, and the total walking time.  When there is
+   * no such path, the result instead holds the reason why: the start or end
+   * location (or both) do not exist, or they are not connected.
+   * @param startLocation the start location of the path
+   * @param endLocation the end location of the path
+   * @return the result of searching for this path
+   */
+  public PathResult findShortestPath(String startLocation, String endLocation);
+
+  /**
+   * Computes the shortest paths for many (start, end) pairs at once.  The
+   * pairs are grouped by start location, so that each distinct start location
+   * is searched from only once, and independent start locations may be
+   * searched in parallel.  Results are produced in the same order as the
+   * pairs, and each becomes available as soon as the search for its own start
+   * location completes.
+   * @param starts the start location of each pair
+   * @param ends the end location of each pair, at the same index as its start
+   * @return a stream with the result for each pair, in order
+   * @throws IllegalArgumentException if starts and ends differ in size
+   */
+  public Stream<PathResult> findShortestPaths(List<String> starts, List<String> ends);
+
+  /**
+   * Resolves a location name that may differ from an actual location's name
+   * by case, surrounding spaces, or a small typo, so that near misses can be
+   * corrected before searching for any paths.
+   * @param name the location name to resolve
+   * @return the name of the matching location, or null if there is no
+   *         single close match
+   */
+  public String resolveLocation(String name);
+
+  /**
+   * Returns location names to suggest for partially typed or misspelled
+   * text: names starting with that text (ignoring case) first, followed by
+   * the names that are most similar to it.
+   * @param query the text typed so far
+   * @param limit the most names to return
+   * @return up to limit suggested location names, best first
+   */
+  public List<String> suggestLocations(String query, int limit);
+
+  /**
+   * Finds the locations that can be walked to from startLocation in the
+   * least time, among a set of candidate locations (or among all locations).
+   * A single search from startLocation stops as soon as the k-th nearest
+   * candidate is found, so only the locations nearer than that are visited.
+   * @param startLocation the location to find the nearest candidates to
+   * @param candidates the locations to choose from, or null to choose from
+   *        every location
+   * @param k the most locations to find
+   * @return the shortest paths to up to k candidates other than
+   *         startLocation itself, nearest first
+   * @throws NoSuchElementException if startLocation does not exist
+   * @throws IllegalArgumentException if k is less than 1
+   */
+  public List<PathResult> findNearestLocations(String startLocation,
+      Collection<String> candidates, int k);
+
+  /**
+   * Finds every location that can be walked to from startLocation within a
+   * time budget, with a single search that never walks past that budget, so
+   * only the locations within it are visited.
+   * @param startLocation the location to walk from
+   * @param seconds the most walking time to include
+   * @return the walking time in seconds to each location within the budget,
+   *         other than startLocation itself, in order of walking time
+   * @throws NoSuchElementException if startLocation does not exist
+   * @throws IllegalArgumentException if seconds is negative or not a number
+   */
+  public Map<String, Double> findLocationsWithin(String startLocation, double seconds);
+
 }
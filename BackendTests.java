@@ -3,7 +3,15 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 public class BackendTests {
 
@@ -81,6 +89,448 @@ public class BackendTests {
     assertTrue((list.size() == 3), "size: " + list.size());
   }
 
+  /**
+   * Tests that findShortestPaths() returns one result per pair, in order, matching the results of
+   * the single pair methods
+   */
+  @Test
+  public void backendTest6() throws IOException {
+    Backend backend = new Backend(new DijkstraGraph<>());
+    backend.loadGraphData("campus.dot");
+
+    List<String> starts = List.of("Memorial Union", "Union South", "asdfasdf", "Memorial Union");
+    List<String> ends = List.of("Union South", "Memorial Union", "Union South", "Science Hall");
+    List<PathResult> results = backend.findShortestPaths(starts, ends).collect(Collectors.toList());
+
+    assertEquals(4, results.size());
+    for (int i : new int[] {0, 1, 3}) {
+      assertTrue(results.get(i).isFound());
+      assertEquals(starts.get(i), results.get(i).getStart());
+      assertEquals(ends.get(i), results.get(i).getEnd());
+      assertEquals(backend.findLocationsOnShortestPath(starts.get(i), ends.get(i)),
+          results.get(i).getLocations());
+      assertEquals(backend.findTimesOnShortestPath(starts.get(i), ends.get(i)),
+          results.get(i).getTimes());
+    }
+    assertEquals(PathResult.Failure.START_NOT_FOUND, results.get(2).getFailure());
+  }
+
+  /**
+   * Tests that location names are resolved despite differences in case or a small typo, and that
+   * suggestions start with the names matching a typed prefix
+   */
+  @Test
+  public void backendTest7() throws IOException {
+    Backend backend = new Backend(new DijkstraGraph<>());
+    backend.loadGraphData("campus.dot");
+
+    assertEquals("Memorial Union", backend.resolveLocation("Memorial Union"));
+    assertEquals("Memorial Union", backend.resolveLocation("  memorial union "));
+    assertEquals("Memorial Union", backend.resolveLocation("Memorail Union"));
+    assertEquals("Science Hall", backend.resolveLocation("Sceince Hall"));
+    assertNull(backend.resolveLocation("asdfasdf"));
+
+    List<String> suggestions = backend.suggestLocations("memorial", 3);
+    assertEquals(3, suggestions.size());
+    // the two names starting with the query come before any merely similar name
+    assertEquals(List.of("Memorial Arch", "Memorial Union"), suggestions.subList(0, 2));
+    assertTrue(backend.suggestLocations("Scence Hal", 5).contains("Science Hall"));
+  }
+
+  /**
+   * Tests that getLongestLocationListFrom() finds a shortest path with as many locations as the
+   * longest one found by searching for each destination separately
+   */
+  @Test
+  public void backendTest8() throws IOException {
+    Backend backend = new Backend(new DijkstraGraph<>());
+    backend.loadGraphData("campus.dot");
+
+    int longest = 0;
+    for (String destination : backend.getListOfAllLocations())
+      longest = Math.max(longest,
+          backend.findLocationsOnShortestPath("Memorial Union", destination).size());
+    List<String> list = backend.getLongestLocationListFrom("Memorial Union");
+
+    assertEquals(longest, list.size());
+    assertEquals("Memorial Union", list.get(0));
+    assertEquals(list, backend.findLocationsOnShortestPath("Memorial Union",
+        list.get(list.size() - 1)));
+    assertThrows(NoSuchElementException.class, () -> backend.getLongestLocationListFrom("asdf"));
+  }
+
+  /**
+   * Tests that findShortestPath() returns the locations, leg times, and total time of a path from
+   * one search, along with the reason when there is no path
+   */
+  @Test
+  public void backendTest9() throws IOException {
+    Backend backend = new Backend(new DijkstraGraph<>());
+    backend.loadGraphData("campus.dot");
+
+    PathResult result = backend.findShortestPath("Memorial Union", "Union South");
+    assertTrue(result.isFound());
+    assertEquals(backend.findLocationsOnShortestPath("Memorial Union", "Union South"),
+        result.getLocations());
+    assertEquals(result.getLocations().size() - 1, result.getTimes().size());
+    double total = 0;
+    for (double time : result.getTimes())
+      total += time;
+    assertEquals(total, result.getTotalTime(), 1e-9);
+
+    assertEquals(PathResult.Failure.START_NOT_FOUND,
+        backend.findShortestPath("asdf", "Union South").getFailure());
+    assertEquals(PathResult.Failure.END_NOT_FOUND,
+        backend.findShortestPath("Union South", "asdf").getFailure());
+    assertEquals(PathResult.Failure.START_AND_END_NOT_FOUND,
+        backend.findShortestPath("asdf", "qwer").getFailure());
+  }
+
+  /**
+   * Tests that loadGraphData() reads quoted names with escapes, comments, edge chains, and any
+   * attribute lists, skipping edges without a seconds attribute
+   */
+  @Test
+  public void backendTest10() throws IOException {
+    Path file = Files.createTempFile("graph", ".dot");
+    try {
+      Files.writeString(file, "// exported campus\n"
+          + "digraph campus {\n"
+          + "  node [shape=box];\n"
+          + "  \"Bascom \\\"Hill\\\"\" -> Library -> \"Union \" + \"South\" [color=red, seconds=12.5];\n"
+          + "  /* not timed */ Library -> \"Bascom \\\"Hill\\\"\" [color=blue]\n"
+          + "  \"Union South\" -> Library [label=\"a]b\"][seconds=3]\n"
+          + "}\n");
+      Backend backend = new Backend(new DijkstraGraph<>());
+      backend.loadGraphData(file.toString());
+
+      assertEquals(3, backend.getListOfAllLocations().size());
+      assertEquals(List.of("Bascom \"Hill\"", "Library", "Union South"),
+          backend.findLocationsOnShortestPath("Bascom \"Hill\"", "Union South"));
+      assertEquals(List.of(12.5, 12.5),
+          backend.findTimesOnShortestPath("Bascom \"Hill\"", "Union South"));
+      assertEquals(List.of(3.0), backend.findTimesOnShortestPath("Union South", "Library"));
+      assertTrue(backend.findLocationsOnShortestPath("Library", "Bascom \"Hill\"").isEmpty());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Tests that a backend answering queries from a compiled snapshot gives the same answers as one
+   * that loaded the dot file it was compiled from
+   */
+  @Test
+  public void backendTest11() throws IOException {
+    Path snapshot = Files.createTempFile("campus", ".graph");
+    try {
+      GraphSnapshot.compile("campus.dot", snapshot.toString());
+      Backend text = new Backend(new DijkstraGraph<>());
+      text.loadGraphData("campus.dot");
+      Backend mapped = new Backend(new DijkstraGraph<>());
+      mapped.loadGraphData(snapshot.toString());
+
+      assertTrue(mapped.getGraph() instanceof MappedGraph);
+      assertEquals(text.getGraph().getNodeCount(), mapped.getGraph().getNodeCount());
+      assertEquals(text.getGraph().getEdgeCount(), mapped.getGraph().getEdgeCount());
+      assertEquals(text.getListOfAllLocations(), mapped.getListOfAllLocations());
+      List<String> locations = text.getListOfAllLocations();
+      for (int i = 0; i < locations.size(); i += 7) {
+        for (int j = 0; j < locations.size(); j += 5) {
+          PathResult expected = text.findShortestPath(locations.get(i), locations.get(j));
+          PathResult actual = mapped.findShortestPath(locations.get(i), locations.get(j));
+          assertEquals(expected.getFailure(), actual.getFailure());
+          assertEquals(expected.getTotalTime(), actual.getTotalTime(), 1e-9);
+          assertEquals(expected.getTimes().size(), actual.getTimes().size());
+        }
+        assertEquals(text.getLongestLocationListFrom(locations.get(i)).size(),
+            mapped.getLongestLocationListFrom(locations.get(i)).size());
+      }
+      // paths and costs read straight from the mapped graph, between searches that reuse the
+      // same arrays, and from a search started while another is still running on this thread
+      GraphADT<String, Double> graph = mapped.getGraph();
+      for (int i = 0; i < locations.size(); i += 11) {
+        String start = locations.get(i);
+        String end = locations.get(locations.size() - 1 - i);
+        PathResult expected = text.findShortestPath(start, end);
+        if (!expected.isFound()) {
+          assertThrows(NoSuchElementException.class, () -> graph.shortestPathData(start, end));
+          continue;
+        }
+        assertEquals(expected.getTotalTime(), graph.shortestPathCost(start, end), 1e-9);
+        assertEquals(expected.getLocations().size(), graph.shortestPathData(start, end).size());
+      }
+      ShortestPathTree<String, Double> nested = graph.nearestTree("Memorial Union",
+          name -> graph.shortestPathData(name, "Memorial Union").size() > 2, 3);
+      assertEquals(text.getGraph().nearestTree("Memorial Union",
+          name -> text.getGraph().shortestPathData(name, "Memorial Union").size() > 2, 3)
+          .getNodes(), nested.getNodes());
+      assertEquals("Memorial Union", mapped.resolveLocation("memorial unoin"));
+      assertEquals(PathResult.Failure.END_NOT_FOUND,
+          mapped.findShortestPath("Memorial Union", "asdf").getFailure());
+      assertThrows(NoSuchElementException.class,
+          () -> graph.shortestPathCost("Memorial Union", "asdf"));
+      assertThrows(UnsupportedOperationException.class,
+          () -> mapped.getGraph().insertNode("asdf"));
+    } finally {
+      Files.delete(snapshot);
+    }
+  }
+
+  /**
+   * Tests that reading a dot file in parallel chunks loads the same graph as reading it in one
+   * pass, including which weight a repeated edge ends up with
+   */
+  @Test
+  public void backendTest12() throws IOException {
+    Backend whole = new Backend(new DijkstraGraph<>());
+    whole.loadGraphData("campus.dot");
+    Backend chunked = new Backend(new DijkstraGraph<>(), 7);
+    chunked.loadGraphData("campus.dot");
+    assertEquals(whole.getListOfAllLocations(), chunked.getListOfAllLocations());
+    assertEquals(whole.getGraph().getEdgeCount(), chunked.getGraph().getEdgeCount());
+    for (String from : whole.getListOfAllLocations()) {
+      for (String to : whole.getListOfAllLocations()) {
+        if (whole.getGraph().containsEdge(from, to))
+          assertEquals(whole.getGraph().getEdge(from, to), chunked.getGraph().getEdge(from, to));
+      }
+    }
+
+    // the same edge is repeated in the first and last chunks, so the last weight must win
+    Path dot = Files.createTempFile("repeated", ".dot");
+    try {
+      StringBuilder text = new StringBuilder("digraph test {\n");
+      text.append("  \"A\" -> \"B\" [seconds=1.0];\n");
+      for (int i = 0; i < 500; i++)
+        text.append("  \"N").append(i).append("\" -> \"N").append(i + 1)
+            .append("\" [seconds=2.5];\n");
+      text.append("  \"A\" -> \"B\" [seconds=9.0];\n}\n");
+      Files.writeString(dot, text.toString());
+      Backend repeated = new Backend(new DijkstraGraph<>(), 4);
+      repeated.loadGraphData(dot.toString());
+      assertEquals(9.0, repeated.getGraph().getEdge("A", "B"));
+      assertEquals(503, repeated.getGraph().getNodeCount());
+    } finally {
+      Files.delete(dot);
+    }
+  }
+
+  /**
+   * Tests that a backend answering path queries from an all-pairs table gives exactly the same
+   * paths as one that searches, and that the table is not used once it is out of date
+   */
+  @Test
+  public void backendTest13() throws IOException {
+    Backend searching = new Backend(new DijkstraGraph<>());
+    searching.loadGraphData("campus.dot");
+    Backend table = new Backend(new DijkstraGraph<>(), 1, 1024);
+    table.loadGraphData("campus.dot");
+    assertTrue(table.getGraph() instanceof AllPairsGraph);
+
+    List<String> locations = searching.getListOfAllLocations();
+    for (int i = 0; i < locations.size(); i += 3) {
+      for (int j = 0; j < locations.size(); j += 4) {
+        PathResult expected = searching.findShortestPath(locations.get(i), locations.get(j));
+        PathResult actual = table.findShortestPath(locations.get(i), locations.get(j));
+        assertEquals(expected.getFailure(), actual.getFailure());
+        assertEquals(expected.getLocations(), actual.getLocations());
+        assertEquals(expected.getTimes(), actual.getTimes());
+      }
+      assertEquals(searching.getLongestLocationListFrom(locations.get(i)),
+          table.getLongestLocationListFrom(locations.get(i)));
+    }
+    assertEquals(searching.getGraph().shortestPathData("Memorial Union", "Union South"),
+        table.getGraph().shortestPathData("Memorial Union", "Union South"));
+    assertThrows(NoSuchElementException.class,
+        () -> table.getGraph().shortestPathCost("Memorial Union", "asdf"));
+
+    AllPairsGraph<String, Double> allPairs = new AllPairsGraph<>(searching.getGraph(), 1024);
+    assertEquals(AllPairsGraph.estimateBytes(locations.size()), allPairs.getMemoryBytes());
+    assertTrue(allPairs.isCurrent());
+    allPairs.insertEdge("Memorial Union", "Union South", 1.0);
+    assertFalse(allPairs.isCurrent());
+    assertEquals(1.0, allPairs.shortestPathCost("Memorial Union", "Union South"));
+    assertThrows(IllegalArgumentException.class,
+        () -> new AllPairsGraph<>(searching.getGraph(), 10));
+  }
+
+  /**
+   * Tests that the nearest locations are found in order of walking time, among candidates or among
+   * every location, with the same paths as searching for each one
+   */
+  @Test
+  public void backendTest14() throws IOException {
+    Backend backend = new Backend(new DijkstraGraph<>());
+    backend.loadGraphData("campus.dot");
+    List<String> locations = backend.getListOfAllLocations();
+    String start = "Memorial Union";
+
+    List<PathResult> nearest = backend.findNearestLocations(start, null, 5);
+    assertEquals(5, nearest.size());
+    List<Double> allTimes = locations.stream().filter(location -> !location.equals(start))
+        .map(location -> backend.findShortestPath(start, location))
+        .filter(PathResult::isFound).map(PathResult::getTotalTime).sorted()
+        .collect(Collectors.toList());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(allTimes.get(i), nearest.get(i).getTotalTime(), 1e-9);
+      assertEquals(start, nearest.get(i).getStart());
+    }
+
+    List<String> candidates = List.of("Union South", "Computer Sciences and Statistics",
+        "Memorial Union", "asdf", locations.get(locations.size() - 1));
+    List<PathResult> found = backend.findNearestLocations(start, candidates, 2);
+    assertEquals(2, found.size());
+    assertTrue(found.get(0).getTotalTime() <= found.get(1).getTotalTime());
+    for (PathResult result : found) {
+      assertTrue(candidates.contains(result.getEnd()));
+      assertNotEquals(start, result.getEnd());
+      assertEquals(backend.findShortestPath(start, result.getEnd()).getLocations(),
+          result.getLocations());
+    }
+    assertEquals(3, backend.findNearestLocations(start, candidates, 10).size());
+    assertThrows(NoSuchElementException.class,
+        () -> backend.findNearestLocations("asdf", null, 3));
+    assertThrows(IllegalArgumentException.class,
+        () -> backend.findNearestLocations(start, null, 0));
+  }
+
+  /**
+   * Tests that the locations within a walking time are exactly those whose shortest path takes at
+   * most that long, in order of walking time
+   */
+  @Test
+  public void backendTest15() throws IOException {
+    Backend backend = new Backend(new DijkstraGraph<>());
+    backend.loadGraphData("campus.dot");
+    String start = "Bascom Hall";
+
+    Map<String, Double> within = backend.findLocationsWithin(start, 300);
+    assertFalse(within.isEmpty());
+    assertFalse(within.containsKey(start));
+    double previous = 0;
+    for (Map.Entry<String, Double> entry : within.entrySet()) {
+      assertTrue(entry.getValue() >= previous && entry.getValue() <= 300);
+      previous = entry.getValue();
+    }
+    for (String location : backend.getListOfAllLocations()) {
+      PathResult result = backend.findShortestPath(start, location);
+      boolean inRange = result.isFound() && result.getTotalTime() <= 300
+          && !location.equals(start);
+      assertEquals(inRange, within.containsKey(location), location);
+      if (inRange)
+        assertEquals(result.getTotalTime(), within.get(location), 1e-9);
+    }
+
+    // a budget of exactly one path's time includes that location
+    Map.Entry<String, Double> farthest = null;
+    for (Map.Entry<String, Double> entry : within.entrySet())
+      farthest = entry;
+    assertTrue(backend.findLocationsWithin(start, farthest.getValue())
+        .containsKey(farthest.getKey()));
+    assertTrue(backend.findLocationsWithin(start, 0).isEmpty());
+    assertThrows(NoSuchElementException.class, () -> backend.findLocationsWithin("asdf", 300));
+    assertThrows(IllegalArgumentException.class, () -> backend.findLocationsWithin(start, -1));
+  }
+
+  /**
+   * Tests that path queries answered from a contraction hierarchy take the same times as searching
+   * (and, on a graph without ties, the same paths), and that a saved hierarchy is read back for the
+   * same graph but built again for a different one, or when it is damaged
+   */
+  @Test
+  public void backendTest16() throws IOException {
+    Path hierarchyFile = Files.createTempFile("campus", ".ch");
+    Path dot = Files.createTempFile("changed", ".dot");
+    try {
+      Files.delete(hierarchyFile);
+      Backend searching = new Backend(new DijkstraGraph<>());
+      searching.loadGraphData("campus.dot");
+      Backend built = new Backend(new DijkstraGraph<>(), 1, 0, hierarchyFile.toString());
+      built.loadGraphData("campus.dot");
+      assertTrue(built.getGraph() instanceof ContractionHierarchyGraph);
+      assertTrue(Files.exists(hierarchyFile));
+      Backend read = new Backend(new DijkstraGraph<>(), 1, 0, hierarchyFile.toString());
+      read.loadGraphData("campus.dot");
+      assertTrue(read.getGraph() instanceof ContractionHierarchyGraph);
+
+      List<String> locations = searching.getListOfAllLocations();
+      for (int i = 0; i < locations.size(); i += 2) {
+        for (int j = 0; j < locations.size(); j += 3) {
+          PathResult expected = searching.findShortestPath(locations.get(i), locations.get(j));
+          PathResult actual = built.findShortestPath(locations.get(i), locations.get(j));
+          assertEquals(expected.getFailure(), actual.getFailure());
+          // campus.dot has paths that tie, which the hierarchy may choose between differently
+          assertEquals(expected.getTotalTime(), actual.getTotalTime(), 1e-9);
+          assertEquals(actual.getLocations(),
+              read.findShortestPath(locations.get(i), locations.get(j)).getLocations());
+        }
+      }
+      assertThrows(NoSuchElementException.class,
+          () -> built.getGraph().shortestPathCost("Memorial Union", "asdf"));
+
+      // a different graph builds and saves a new hierarchy in place of the old one
+      Files.writeString(dot, "digraph campus {\n"
+          + "  A -> B [seconds=1];\n  B -> C [seconds=2];\n  A -> C [seconds=4];\n}\n");
+      read.loadGraphData(dot.toString());
+      assertEquals(List.of("A", "B", "C"), read.findLocationsOnShortestPath("A", "C"));
+      assertTrue(read.findLocationsOnShortestPath("C", "A").isEmpty());
+      DijkstraGraph<String, Double> changed = new DijkstraGraph<>();
+      new Backend(changed).loadGraphData(dot.toString());
+      ContractionHierarchyGraph<String, Double> saved =
+          ContractionHierarchyGraph.load(hierarchyFile.toString(), changed);
+      assertEquals(3.0, saved.shortestPathCost("A", "C"));
+      assertThrows(IOException.class, () -> ContractionHierarchyGraph.load(
+          hierarchyFile.toString(), (DijkstraGraph<String, Double>) searching.getGraph()));
+
+      // a damaged hierarchy is rejected when it is read, and then built again
+      byte[] bytes = Files.readAllBytes(hierarchyFile);
+      ByteBuffer file = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+      int firstTarget = 24 + 12 + 4 * file.getInt(12); // after the header, ranks, and sources
+      int target = file.getInt(firstTarget);
+      file.putInt(firstTarget, 99);
+      Files.write(hierarchyFile, bytes);
+      assertThrows(IOException.class,
+          () -> ContractionHierarchyGraph.load(hierarchyFile.toString(), changed));
+      file.putInt(firstTarget, target);
+      file.putInt(24, file.getInt(28)); // two nodes with the same rank
+      Files.write(hierarchyFile, bytes);
+      assertThrows(IOException.class,
+          () -> ContractionHierarchyGraph.load(hierarchyFile.toString(), changed));
+      read.loadGraphData(dot.toString());
+      assertEquals(3.0, ContractionHierarchyGraph.load(hierarchyFile.toString(), changed)
+          .shortestPathCost("A", "C"));
+      saved.insertEdge("A", "C", 2.5);
+      assertFalse(saved.isCurrent());
+      assertEquals(List.of("A", "C"), saved.shortestPathData("A", "C"));
+
+      // without ties, every path matches the one that searching finds
+      Random random = new Random(25);
+      DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+      for (int i = 0; i < 120; i++)
+        graph.insertNode(i);
+      for (int i = 0; i < 400; i++)
+        graph.insertEdge(random.nextInt(120), random.nextInt(120), random.nextDouble() * 100);
+      ContractionHierarchyGraph<Integer, Double> hierarchy = new ContractionHierarchyGraph<>(graph);
+      for (int start = 0; start < 120; start += 7) {
+        for (int end = 0; end < 120; end++) {
+          if (!graph.shortestPathTree(start).contains(end)) {
+            int from = start;
+            int to = end;
+            assertThrows(NoSuchElementException.class, () -> hierarchy.shortestPathData(from, to));
+            continue;
+          }
+          assertEquals(graph.shortestPathData(start, end), hierarchy.shortestPathData(start, end));
+          assertEquals(graph.shortestPathCost(start, end), hierarchy.shortestPathCost(start, end));
+          assertEquals(graph.shortestPathTree(start, List.of(end)).pathTo(end),
+              hierarchy.shortestPathTree(start, List.of(end)).pathTo(end));
+        }
+      }
+    } finally {
+      Files.deleteIfExists(hierarchyFile);
+      Files.delete(dot);
+    }
+  }
+
   /**
    * Tests that the frontend correctly displays the shortest path between two connected locations
    */
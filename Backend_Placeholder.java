@@ -1,7 +1,12 @@
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.io.IOException;
 import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * This is a placeholder for the fully working Backend that will be developed
@@ -47,4 +52,64 @@ public class Backend_Placeholder implements BackendInterface {
     return graph.shortestPathData(startLocation,lastLocation);
   }
 
+  // looks up the path through the placeholder methods above
+  public PathResult findShortestPath(String startLocation, String endLocation) {
+    boolean startExists = graph.containsNode(startLocation);
+    boolean endExists = graph.containsNode(endLocation);
+    if(!startExists && !endExists)
+      return PathResult.failed(startLocation,endLocation,PathResult.Failure.START_AND_END_NOT_FOUND);
+    if(!startExists)
+      return PathResult.failed(startLocation,endLocation,PathResult.Failure.START_NOT_FOUND);
+    if(!endExists)
+      return PathResult.failed(startLocation,endLocation,PathResult.Failure.END_NOT_FOUND);
+    List<String> locations = findLocationsOnShortestPath(startLocation,endLocation);
+    if(locations.isEmpty())
+      return PathResult.failed(startLocation,endLocation,PathResult.Failure.NO_PATH);
+    List<Double> times = findTimesOnShortestPath(startLocation,endLocation);
+    double total = 0;
+    for(double time : times) total += time;
+    return PathResult.found(startLocation,endLocation,locations,times,total);
+  }
+
+  // looks up each pair one at a time through the placeholder methods above
+  public Stream<PathResult> findShortestPaths(List<String> starts, List<String> ends) {
+    return IntStream.range(0,starts.size())
+      .mapToObj(i -> findShortestPath(starts.get(i),ends.get(i)));
+  }
+
+  // finds the path to each candidate, and keeps the k nearest
+  public List<PathResult> findNearestLocations(String startLocation,
+      Collection<String> candidates, int k) {
+    if(!graph.containsNode(startLocation)) throw new NoSuchElementException();
+    List<PathResult> nearest = new ArrayList<>();
+    for(String location : candidates == null ? graph.getAllNodes() : candidates) {
+      PathResult result = findShortestPath(startLocation,location);
+      if(result.isFound() && !location.equals(startLocation)) nearest.add(result);
+    }
+    nearest.sort((a,b) -> Double.compare(a.getTotalTime(),b.getTotalTime()));
+    return nearest.subList(0,Math.min(k,nearest.size()));
+  }
+
+  // lists the locations that the placeholder graph settles within the budget
+  public Map<String, Double> findLocationsWithin(String startLocation, double seconds) {
+    ShortestPathTree<String, Double> tree = graph.boundedTree(startLocation,seconds);
+    Map<String, Double> within = new LinkedHashMap<>();
+    for(String location : tree.getNodes())
+      if(!location.equals(startLocation)) within.put(location,tree.costTo(location));
+    return within;
+  }
+
+  // only resolves names that exactly match a location
+  public String resolveLocation(String name) {
+    return graph.containsNode(name) ? name : null;
+  }
+
+  // suggests the locations that start with the query
+  public List<String> suggestLocations(String query, int limit) {
+    List<String> suggestions = new ArrayList<>();
+    for(String location : graph.getAllNodes())
+      if(location.startsWith(query) && suggestions.size() < limit) suggestions.add(location);
+    return suggestions;
+  }
+
 }
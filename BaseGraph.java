@@ -1,3 +1,4 @@
+import java.util.ArrayList;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
@@ -5,12 +6,21 @@ import java.util.NoSuchElementException;
 /**
  * This BaseGraph class contains stores a set of nodes, along with a set of
  * directed and weighted edges connecting those nodes.
+ *
+ * Each node is also given an integer id, and the ids of the nodes in a graph
+ * are always dense: from 0 up to (but not including) the number of nodes.
+ * Node data only needs to be looked up once, to find its id, after which
+ * searches can keep their per node state in primitive arrays indexed by id
+ * rather than in hash sets and maps keyed by node data.
  */
 public class BaseGraph<NodeType, EdgeType extends Number> {
 
     // Each node contains unique data along with two lists of directed edges
+    // (linked lists when inserted one at a time, or array lists sized to fit
+    // when loaded all at once from a GraphBuilder)
     protected class Node {
         public NodeType data;
+        public int id; // this node's index within nodesById
         public List<Edge> edgesLeaving = new LinkedList<>();
         public List<Edge> edgesEntering = new LinkedList<>();
 
@@ -21,6 +31,12 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
 
     // Nodes can be retrieved from this map by their unique data
     protected MapADT<NodeType, Node> nodes = null;
+    // and from this list by their id
+    protected ArrayList<Node> nodesById = new ArrayList<>();
+
+    // Counts every change made to this graph's nodes or edges, so that
+    // anything computed from this graph can tell when it is out of date
+    protected int modCount = 0;
 
     // Each edge contains data/weight, and two nodes that it connects
     protected class Edge {
@@ -38,6 +54,61 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     protected int edgeCount = 0;
     // Edges can be retrieved through the edge lists in either connected node
 
+    // The same edges packed into arrays by node id, for searches to scan
+    // without walking lists of Edge objects or unboxing their weights.  The
+    // edges leaving node v are at indexes leavingStart[v] up to (but not
+    // including) leavingStart[v + 1] of the leaving arrays, and likewise for
+    // the edges entering it, whose other ends are their predecessors.
+    protected class Adjacency {
+        public final int modCount; // the modCount this was packed at
+        public final int[] leavingStart;
+        public final int[] leavingOther; // the id of each edge's successor
+        public final double[] leavingWeight;
+        public final Object[] leavingEdge; // each Edge, to follow its data
+        public final int[] enteringStart;
+        public final int[] enteringOther; // the id of each edge's predecessor
+        public final double[] enteringWeight;
+        public final Object[] enteringEdge;
+
+        public Adjacency() {
+            int nodeCount = nodesById.size();
+            modCount = BaseGraph.this.modCount;
+            leavingStart = new int[nodeCount + 1];
+            enteringStart = new int[nodeCount + 1];
+            for (Node node : nodesById) {
+                leavingStart[node.id + 1] = node.edgesLeaving.size();
+                enteringStart[node.id + 1] = node.edgesEntering.size();
+            }
+            for (int id = 0; id < nodeCount; id++) {
+                leavingStart[id + 1] += leavingStart[id];
+                enteringStart[id + 1] += enteringStart[id];
+            }
+            leavingOther = new int[leavingStart[nodeCount]];
+            leavingWeight = new double[leavingOther.length];
+            leavingEdge = new Object[leavingOther.length];
+            enteringOther = new int[enteringStart[nodeCount]];
+            enteringWeight = new double[enteringOther.length];
+            enteringEdge = new Object[enteringOther.length];
+            for (Node node : nodesById) {
+                int i = leavingStart[node.id];
+                for (Edge edge : node.edgesLeaving) {
+                    leavingOther[i] = edge.successor.id;
+                    leavingWeight[i] = edge.data.doubleValue();
+                    leavingEdge[i++] = edge;
+                }
+                i = enteringStart[node.id];
+                for (Edge edge : node.edgesEntering) {
+                    enteringOther[i] = edge.predecessor.id;
+                    enteringWeight[i] = edge.data.doubleValue();
+                    enteringEdge[i++] = edge;
+                }
+            }
+        }
+    }
+
+    // packed the first time a search needs it after each change
+    private volatile Adjacency adjacency = null;
+
     /**
      * Constructor for BaseGraph that provides the map the graph uses.
      * 
@@ -59,7 +130,11 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     public boolean insertNode(NodeType data) {
         if (nodes.containsKey(data))
             return false; // throws NPE when data's null
-        nodes.put(data, new Node(data));
+        Node newNode = new Node(data);
+        newNode.id = nodesById.size();
+        nodesById.add(newNode);
+        nodes.put(data, newNode);
+        modCount++;
         return true;
     }
 
@@ -83,9 +158,65 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         // remove all edges leaving neighboring nodes toward this one
         for (Edge edge : oldNode.edgesEntering)
             edge.predecessor.edgesLeaving.remove(edge);
+        // keep ids dense by moving the last node into the removed node's id
+        Node lastNode = nodesById.remove(nodesById.size() - 1);
+        if (lastNode != oldNode) {
+            lastNode.id = oldNode.id;
+            nodesById.set(lastNode.id, lastNode);
+        }
+        modCount++;
         return true;
     }
 
+    /**
+     * Remove every node and edge from the graph.  Unlike removing each node,
+     * this does not visit any of the edges.
+     */
+    public void clear() {
+        nodes.clear();
+        nodesById = new ArrayList<>();
+        edgeCount = 0;
+        modCount++;
+    }
+
+    /**
+     * Replace every node and edge in the graph with those collected by a
+     * builder.  The adjacency lists are created in one pass, each sized to
+     * fit, rather than searched for an existing edge as each edge is added.
+     *
+     * @param builder the nodes and edges to load into this graph
+     */
+    public void load(GraphBuilder<NodeType, EdgeType> builder) {
+        clear();
+        List<NodeType> data = builder.nodes();
+        int[] distinct = builder.distinctEdges();
+        // count each node's edges, so that every list is created at its size
+        int[] leaving = new int[data.size()];
+        int[] entering = new int[data.size()];
+        for (int edge : distinct) {
+            leaving[builder.source(edge)]++;
+            entering[builder.target(edge)]++;
+        }
+        nodesById.ensureCapacity(data.size());
+        for (int id = 0; id < data.size(); id++) {
+            Node node = new Node(data.get(id));
+            node.id = id;
+            node.edgesLeaving = new ArrayList<>(leaving[id]);
+            node.edgesEntering = new ArrayList<>(entering[id]);
+            nodesById.add(node);
+            nodes.put(node.data, node);
+        }
+        for (int edge : distinct) {
+            Node pred = nodesById.get(builder.source(edge));
+            Node succ = nodesById.get(builder.target(edge));
+            Edge newEdge = new Edge(builder.weight(edge), pred, succ);
+            pred.edgesLeaving.add(newEdge);
+            succ.edgesEntering.add(newEdge);
+        }
+        edgeCount = distinct.length;
+        modCount++;
+    }
+
     /**
      * Check whether the graph contains a node with the provided data.
      * 
@@ -103,7 +234,65 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      * @return list of all node data
      */
     public List<NodeType> getAllNodes(){
-        return nodes.getKeys();
+        List<NodeType> all = new ArrayList<>(nodesById.size());
+        for (Node node : nodesById)
+            all.add(node.data);
+        return all;
+    }
+
+    /**
+     * Returns the id of the node containing the provided data.  Ids are dense,
+     * from 0 up to getNodeCount(), but removing a node moves the node that had
+     * the largest id into the removed node's id.
+     *
+     * @param data the node contents to find the id of
+     * @return the id of that node, or -1 if data is not in this graph
+     */
+    public int getNodeId(NodeType data) {
+        Node node = getNode(data);
+        return node == null ? -1 : node.id;
+    }
+
+    /**
+     * Returns the data stored in the node with the provided id.
+     *
+     * @param id the id of the node
+     * @return the data stored in that node
+     * @throws IndexOutOfBoundsException if id is not from 0 up to getNodeCount()
+     */
+    public NodeType getNodeData(int id) {
+        return nodesById.get(id).data;
+    }
+
+    /**
+     * Returns a count of the changes made to this graph's nodes and edges.
+     * This count differs between two calls whenever the graph was modified
+     * between them.
+     *
+     * @return the number of modifications made to this graph
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Return this graph's edges packed into arrays by node id, packing them
+     * again if the graph has changed since they were last packed.  Like the
+     * rest of this graph, the result can be shared by any number of threads
+     * searching at once, as long as none of them changes the graph.
+     *
+     * @return the packed edges of this graph as it is now
+     */
+    protected Adjacency adjacency() {
+        Adjacency current = adjacency;
+        if (current == null || current.modCount != modCount) {
+            synchronized (this) {
+                current = adjacency;
+                if (current == null || current.modCount != modCount)
+                    adjacency = current = new Adjacency();
+            }
+        }
+        return current;
     }
 
     /**
@@ -112,7 +301,7 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      * @return the number of nodes in the graph
      */
     public int getNodeCount() {
-        return nodes.getSize();
+        return nodesById.size();
     }
 
     /**
@@ -128,15 +317,16 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      */
     public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
         // find nodes associated with node data, and return false when not found
-        Node predNode = nodes.get(pred);
-        Node succNode = nodes.get(succ);
+        Node predNode = getNode(pred);
+        Node succNode = getNode(succ);
         if (predNode == null || succNode == null)
             return false;
-        try {
-            // when an edge alread exists within the graph, update its weight
-            Edge existingEdge = getEdgeHelper(pred, succ);
+        modCount++;
+        // when an edge alread exists within the graph, update its weight
+        Edge existingEdge = findEdge(predNode, succNode);
+        if (existingEdge != null) {
             existingEdge.data = weight;
-        } catch (NoSuchElementException e) {
+        } else {
             // otherwise create a new edges
             Edge newEdge = new Edge(weight, predNode, succNode);
             this.edgeCount++;
@@ -156,19 +346,17 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *         false if such an edge is not found in the graph
      */
     public boolean removeEdge(NodeType pred, NodeType succ) {
-        try {
-            // when an edge exists
-            Edge oldEdge = getEdgeHelper(pred, succ);
-            // remove it from the edge lists of each adjacent node
-            oldEdge.predecessor.edgesLeaving.remove(oldEdge);
-            oldEdge.successor.edgesEntering.remove(oldEdge);
-            // and decrement the edge count before removing
-            this.edgeCount--;
-            return true;
-        } catch (NoSuchElementException e) {
-            // when no such edge exists, return false instead
+        Edge oldEdge = lookupEdge(pred, succ);
+        // when no such edge exists, return false instead
+        if (oldEdge == null)
             return false;
-        }
+        // remove it from the edge lists of each adjacent node
+        oldEdge.predecessor.edgesLeaving.remove(oldEdge);
+        oldEdge.successor.edgesEntering.remove(oldEdge);
+        // and decrement the edge count before removing
+        this.edgeCount--;
+        modCount++;
+        return true;
     }
 
     /**
@@ -179,12 +367,7 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      * @return true if the edge is found in the graph, or false other
      */
     public boolean containsEdge(NodeType pred, NodeType succ) {
-        try {
-            getEdgeHelper(pred, succ);
-            return true;
-        } catch (NoSuchElementException e) {
-            return false;
-        }
+        return lookupEdge(pred, succ) != null;
     }
 
     /**
@@ -201,15 +384,35 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     }
 
     protected Edge getEdgeHelper(NodeType pred, NodeType succ) {
-        Node predNode = nodes.get(pred);
-        // search for edge through the predecessor's list of leaving edges
+        Edge edge = lookupEdge(pred, succ);
+        // when no such edge can be found, throw NSE
+        if (edge == null)
+            throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
+                    succ.toString());
+        return edge;
+    }
+
+    // returns the node containing data, or null when there is none
+    protected Node getNode(NodeType data) {
+        return nodes.containsKey(data) ? nodes.get(data) : null;
+    }
+
+    // returns the edge between the nodes containing pred and succ, or null
+    // when there is none (or either node is not in this graph)
+    protected Edge lookupEdge(NodeType pred, NodeType succ) {
+        Node predNode = getNode(pred);
+        Node succNode = getNode(succ);
+        return predNode == null || succNode == null ? null : findEdge(predNode, succNode);
+    }
+
+    // returns the edge from predNode to succNode, or null when there is none
+    protected Edge findEdge(Node predNode, Node succNode) {
+        // search for edge through the predecessor's list of leaving edges,
+        // comparing nodes by identity rather than by their data
         for (Edge edge : predNode.edgesLeaving)
-            // compare succ to the data in each leaving edge's successor
-            if (edge.successor.data.equals(succ))
+            if (edge.successor == succNode)
                 return edge;
-        // when no such edge can be found, throw NSE
-        throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
-                succ.toString());
+        return null;
     }
 
     /**
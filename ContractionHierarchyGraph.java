@@ -0,0 +1,1041 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * A graph that answers shortest path queries from a contraction hierarchy of the graph it wraps,
+ * which is built once when it is created (or read back from a file it was saved to). Every other
+ * method is forwarded to the graph being wrapped.
+ *
+ * Building the hierarchy contracts the nodes one at a time, from least to most important: each
+ * contracted node is taken out of the graph, and a shortcut edge is added between each pair of its
+ * remaining neighbors whose shortest path led through it (unless a witness search finds another
+ * path that is cheaper). A node's importance is its edge difference (the shortcuts that
+ * contracting it would add, less the edges it would remove) plus the number of its neighbors
+ * already contracted, which spreads contraction evenly over the graph. Each round contracts every
+ * node that is less important than all of its remaining neighbors, so no two of them are
+ * adjacent, and their witness searches run in parallel on the common fork-join pool. Those
+ * searches may pass through other nodes contracted in the same round: a witness is only accepted
+ * when it is strictly cheaper, so a shortest path through a contracted node always gets its
+ * shortcut.
+ *
+ * A query then searches forward from the start and backward from the end at once, each only
+ * following edges (original or shortcut) up to more important nodes, and the two searches meet at
+ * the most important node of the shortest path. Those searches settle only a few hundred nodes
+ * even in graphs with millions of edges. Each shortcut on the path found remembers the two edges
+ * it replaced, so the path is unpacked into the original nodes, and its cost is added up from the
+ * start along the original edges, just as searching the wrapped graph would add it up. Where
+ * several paths tie for the shortest, the hierarchy may not pick the same one as that search.
+ *
+ * The hierarchy is saved to a file as little endian numbers, laid out as:
+ *
+ *     header      magic "CCHS", format version, node count N, edge count E (4 ints), and a
+ *                 fingerprint of the graph it was built from (1 long), 24 bytes in all
+ *     ranks       N ints: the order in which each node was contracted
+ *     sources     E ints: the node each edge leaves from
+ *     targets     E ints: the node each edge leads to
+ *     weights     E doubles: the weight of each edge
+ *     firsts      E ints: the first of the two edges a shortcut replaces, or -1 for an original edge
+ *     seconds     E ints: the second of the two edges a shortcut replaces, or -1
+ *
+ * Nodes are numbered by their ids in the wrapped graph, and a saved hierarchy is only read back
+ * for a graph with the same fingerprint, once every edge and rank in it has been checked.
+ *
+ * Changing the graph through this wrapper, or directly, leaves the hierarchy out of date. Queries
+ * are then forwarded to the wrapped graph instead, until a new wrapper is created.
+ */
+public class ContractionHierarchyGraph<NodeType, EdgeType extends Number>
+    implements GraphADT<NodeType, EdgeType> {
+  static final int MAGIC = 0x53484343; // "CCHS" read as a little endian int
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 24;
+
+  private final DijkstraGraph<NodeType, EdgeType> graph;
+  private final int nodeCount;
+  private final long fingerprint;
+  // the wrapped graph's modification count when the hierarchy was built, and whether this graph
+  // has been changed since
+  private final int builtModCount;
+  private volatile boolean modified = false;
+
+  // the contraction order of each node, and every edge of the hierarchy, shortcuts included
+  private final int[] ranks;
+  private final int edgeCount;
+  private final int[] sources;
+  private final int[] targets;
+  private final double[] weights;
+  private final int[] firsts; // the edges that each shortcut replaces, or -1 for original edges
+  private final int[] seconds;
+
+  // the edges each node's forward search follows (up to more important nodes that it leads to),
+  // and those its backward search follows (up to more important nodes that lead to it), both in
+  // compressed sparse rows: node v's are [offsets[v], offsets[v+1])
+  private final int[] upOffsets;
+  private final int[] upEdges;
+  private final int[] upNeighbors;
+  private final double[] upWeights;
+  private final int[] downOffsets;
+  private final int[] downEdges;
+  private final int[] downNeighbors;
+  private final double[] downWeights;
+
+  // each thread's query workspace
+  private static final ThreadLocal<QuerySpace> querySpaces =
+      ThreadLocal.withInitial(QuerySpace::new);
+
+  /**
+   * Builds a contraction hierarchy of a graph.
+   *
+   * @param graph the graph to wrap, which should not be changed while the hierarchy is built
+   */
+  public ContractionHierarchyGraph(DijkstraGraph<NodeType, EdgeType> graph) {
+    this(graph, new Contraction(graph).contract(), fingerprintOf(graph));
+  }
+
+  // wraps a graph in a hierarchy that has already been built for it
+  private ContractionHierarchyGraph(DijkstraGraph<NodeType, EdgeType> graph, Contraction hierarchy,
+      long fingerprint) {
+    this.graph = graph;
+    this.builtModCount = graph.getModCount();
+    this.fingerprint = fingerprint;
+    this.nodeCount = hierarchy.nodeCount;
+    this.ranks = hierarchy.ranks;
+    this.edgeCount = hierarchy.edgeCount;
+    this.sources = hierarchy.sources;
+    this.targets = hierarchy.targets;
+    this.weights = hierarchy.weights;
+    this.firsts = hierarchy.firsts;
+    this.seconds = hierarchy.seconds;
+
+    // an edge is followed forward from its less important end, and backward from its other end
+    upOffsets = new int[nodeCount + 1];
+    downOffsets = new int[nodeCount + 1];
+    for (int e = 0; e < edgeCount; e++) {
+      if (ranks[sources[e]] < ranks[targets[e]])
+        upOffsets[sources[e] + 1]++;
+      else
+        downOffsets[targets[e] + 1]++;
+    }
+    for (int v = 0; v < nodeCount; v++) {
+      upOffsets[v + 1] += upOffsets[v];
+      downOffsets[v + 1] += downOffsets[v];
+    }
+    upEdges = new int[upOffsets[nodeCount]];
+    upNeighbors = new int[upEdges.length];
+    upWeights = new double[upEdges.length];
+    downEdges = new int[downOffsets[nodeCount]];
+    downNeighbors = new int[downEdges.length];
+    downWeights = new double[downEdges.length];
+    int[] upFill = Arrays.copyOf(upOffsets, nodeCount);
+    int[] downFill = Arrays.copyOf(downOffsets, nodeCount);
+    for (int e = 0; e < edgeCount; e++) {
+      if (ranks[sources[e]] < ranks[targets[e]]) {
+        int slot = upFill[sources[e]]++;
+        upEdges[slot] = e;
+        upNeighbors[slot] = targets[e];
+        upWeights[slot] = weights[e];
+      } else {
+        int slot = downFill[targets[e]]++;
+        downEdges[slot] = e;
+        downNeighbors[slot] = sources[e];
+        downWeights[slot] = weights[e];
+      }
+    }
+  }
+
+  /**
+   * Reads back a hierarchy saved for a graph.
+   *
+   * @param filename the path of the file the hierarchy was saved to
+   * @param graph    the graph to wrap, which must be the one the hierarchy was built from
+   * @return the graph wrapped in the hierarchy that was read
+   * @throws IOException if the file cannot be read, is not a hierarchy in a supported format, was
+   *                     built from a different graph, or is corrupted
+   */
+  public static <NodeType, EdgeType extends Number> ContractionHierarchyGraph<NodeType, EdgeType>
+      load(String filename, DijkstraGraph<NodeType, EdgeType> graph) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_BYTES || size > Integer.MAX_VALUE)
+        throw new IOException(filename + " is not a contraction hierarchy");
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getInt() != MAGIC)
+      throw new IOException(filename + " is not a contraction hierarchy");
+    int version = buffer.getInt();
+    if (version != VERSION)
+      throw new IOException(filename + " is a contraction hierarchy in unsupported format version "
+          + version + " (expected " + VERSION + ")");
+    int nodeCount = buffer.getInt();
+    int edgeCount = buffer.getInt();
+    long fingerprint = buffer.getLong();
+    if (nodeCount != graph.getNodeCount() || fingerprint != fingerprintOf(graph))
+      throw new IOException(filename + " was built from a different graph");
+    if (buffer.remaining() != 4L * nodeCount + 24L * edgeCount)
+      throw new IOException(filename + " is truncated or has extra bytes");
+
+    Contraction hierarchy = new Contraction(nodeCount, edgeCount);
+    buffer.asIntBuffer().get(hierarchy.ranks);
+    buffer.position(buffer.position() + 4 * nodeCount);
+    buffer.asIntBuffer().get(hierarchy.sources, 0, edgeCount);
+    buffer.position(buffer.position() + 4 * edgeCount);
+    buffer.asIntBuffer().get(hierarchy.targets, 0, edgeCount);
+    buffer.position(buffer.position() + 4 * edgeCount);
+    buffer.asDoubleBuffer().get(hierarchy.weights, 0, edgeCount);
+    buffer.position(buffer.position() + 8 * edgeCount);
+    buffer.asIntBuffer().get(hierarchy.firsts, 0, edgeCount);
+    buffer.position(buffer.position() + 4 * edgeCount);
+    buffer.asIntBuffer().get(hierarchy.seconds, 0, edgeCount);
+    hierarchy.edgeCount = edgeCount;
+    String problem = problemWith(hierarchy, graph);
+    if (problem != null)
+      throw new IOException(filename + " is corrupted: " + problem);
+    return new ContractionHierarchyGraph<>(graph, hierarchy, fingerprint);
+  }
+
+  /**
+   * Checks that a hierarchy read from a file is one that contracting the graph could have built, so
+   * that a damaged file is rejected when it is loaded rather than failing (or looping) in a query.
+   * The ranks must number the nodes in some order, each original edge must be an edge of the graph
+   * with the same weight, and each shortcut must join the two edges it replaces at a node contracted
+   * before both of its ends, with their weights added up. Unpacking a shortcut then always reaches
+   * original edges, since every edge it is replaced by has an end contracted earlier than any of its
+   * own.
+   *
+   * @return what is wrong with the hierarchy, or null if nothing is
+   */
+  private static String problemWith(Contraction hierarchy, DijkstraGraph<?, ?> graph) {
+    int nodeCount = hierarchy.nodeCount;
+    int[] ranks = hierarchy.ranks;
+    boolean[] ranked = new boolean[nodeCount];
+    for (int v = 0; v < nodeCount; v++) {
+      if (ranks[v] < 0 || ranks[v] >= nodeCount || ranked[ranks[v]])
+        return "node " + v + " has an invalid rank";
+      ranked[ranks[v]] = true;
+    }
+    int[] sources = hierarchy.sources;
+    int[] targets = hierarchy.targets;
+    double[] weights = hierarchy.weights;
+    int[] firsts = hierarchy.firsts;
+    int[] seconds = hierarchy.seconds;
+    int edgeCount = hierarchy.edgeCount;
+    for (int e = 0; e < edgeCount; e++) {
+      int source = sources[e];
+      int target = targets[e];
+      if (source < 0 || source >= nodeCount || target < 0 || target >= nodeCount
+          || source == target)
+        return "edge " + e + " has invalid ends";
+      int first = firsts[e];
+      int second = seconds[e];
+      if (first < 0 && second < 0) {
+        BaseGraph<?, ?>.Edge edge = findEdge(graph, source, target);
+        if (edge == null || edge.data.doubleValue() != weights[e])
+          return "edge " + e + " is not an edge of the graph";
+        continue;
+      }
+      if (first < 0 || first >= edgeCount || second < 0 || second >= edgeCount
+          || sources[first] != source || targets[second] != target
+          || targets[first] != sources[second])
+        return "shortcut " + e + " does not join the edges it replaces";
+      int middle = targets[first];
+      if (middle < 0 || middle >= nodeCount || ranks[middle] >= ranks[source]
+          || ranks[middle] >= ranks[target])
+        return "shortcut " + e + " skips a node that was contracted after its ends";
+      if (weights[e] != weights[first] + weights[second])
+        return "shortcut " + e + " does not weigh what the edges it replaces do";
+    }
+    return null;
+  }
+
+  // returns the edge of a graph from one node id to another, or null when there is none
+  private static BaseGraph<?, ?>.Edge findEdge(DijkstraGraph<?, ?> graph, int source, int target) {
+    for (BaseGraph<?, ?>.Edge edge : graph.nodesById.get(source).edgesLeaving) {
+      if (edge.successor.id == target)
+        return edge;
+    }
+    return null;
+  }
+
+  /**
+   * Saves this hierarchy to a file, to be read back by load. The file is written next to its final
+   * location and then moved into place, so it is never seen half written.
+   *
+   * @param filename the path of the file to write
+   * @throws IOException if the file cannot be written, or the hierarchy is too large for one file
+   */
+  public void save(String filename) throws IOException {
+    if (HEADER_BYTES + 4L * nodeCount + 24L * edgeCount > Integer.MAX_VALUE)
+      throw new IOException("The contraction hierarchy is too large to save to " + filename);
+    Path target = Paths.get(filename).toAbsolutePath();
+    Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer out = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(edgeCount).putLong(fingerprint);
+        for (int rank : ranks)
+          flushIfFull(channel, out, 4).putInt(rank);
+        for (int e = 0; e < edgeCount; e++)
+          flushIfFull(channel, out, 4).putInt(sources[e]);
+        for (int e = 0; e < edgeCount; e++)
+          flushIfFull(channel, out, 4).putInt(targets[e]);
+        for (int e = 0; e < edgeCount; e++)
+          flushIfFull(channel, out, 8).putDouble(weights[e]);
+        for (int e = 0; e < edgeCount; e++)
+          flushIfFull(channel, out, 4).putInt(firsts[e]);
+        for (int e = 0; e < edgeCount; e++)
+          flushIfFull(channel, out, 4).putInt(seconds[e]);
+        flush(channel, out);
+      }
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * @return the number of shortcut edges that the hierarchy added to the wrapped graph
+   */
+  public int getShortcutCount() {
+    int shortcuts = 0;
+    for (int e = 0; e < edgeCount; e++) {
+      if (firsts[e] >= 0)
+        shortcuts++;
+    }
+    return shortcuts;
+  }
+
+  /**
+   * @return true if the hierarchy still matches the wrapped graph, so that queries are answered
+   *         from it
+   */
+  public boolean isCurrent() {
+    return !modified && graph.getModCount() == builtModCount;
+  }
+
+  @Override
+  public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+    if (!isCurrent())
+      return graph.shortestPathData(start, end);
+    int[] path = pathBetween(idOf(start, "Start"), idOf(end, "End"));
+    if (path == null)
+      throw new NoSuchElementException("No path from " + start + " to " + end);
+    List<NodeType> data = new ArrayList<>(path.length + 1);
+    data.add(start);
+    for (int edge : path)
+      data.add(graph.getNodeData(targets[edge]));
+    return data;
+  }
+
+  @Override
+  public double shortestPathCost(NodeType start, NodeType end) {
+    if (!isCurrent())
+      return graph.shortestPathCost(start, end);
+    int[] path = pathBetween(idOf(start, "Start"), idOf(end, "End"));
+    if (path == null)
+      throw new NoSuchElementException("No path from " + start + " to " + end);
+    // the weight of each original edge is its data's double value, added up from the start
+    double cost = 0;
+    for (int edge : path)
+      cost += weights[edge];
+    return cost;
+  }
+
+  /**
+   * Reads the path from the original edges that the hierarchy's path unpacks into, without
+   * building a tree.
+   */
+  @Override
+  public boolean shortestPath(NodeType start, NodeType end, List<NodeType> nodes,
+      List<EdgeType> edges) {
+    if (!isCurrent())
+      return graph.shortestPath(start, end, nodes, edges);
+    if (start == null || end == null || !graph.containsNode(start) || !graph.containsNode(end))
+      return false;
+    int[] path = pathBetween(idOf(start, "Start"), idOf(end, "End"));
+    if (path == null)
+      return false;
+    nodes.add(start);
+    NodeType previous = start;
+    for (int e : path) {
+      NodeType node = graph.getNodeData(targets[e]);
+      edges.add(graph.getEdge(previous, node));
+      nodes.add(node);
+      previous = node;
+    }
+    return true;
+  }
+
+  /**
+   * Returns a tree with the shortest path from start to a single end, found with the hierarchy,
+   * which holds only the nodes along that path. Trees to several ends are found by searching the
+   * wrapped graph.
+   */
+  @Override
+  public ShortestPathTree<NodeType, EdgeType> shortestPathTree(NodeType start,
+      Collection<NodeType> ends) {
+    if (!isCurrent() || ends.size() != 1)
+      return graph.shortestPathTree(start, ends);
+    int startId = idOf(start, "Start");
+    ShortestPathTree<NodeType, EdgeType> tree = new ShortestPathTree<>(start);
+    NodeType end = ends.iterator().next();
+    if (end == null || !graph.containsNode(end))
+      return tree;
+    int[] path = pathBetween(startId, idOf(end, "End"));
+    if (path != null) {
+      double cost = 0;
+      for (int e : path) {
+        NodeType previous = graph.getNodeData(sources[e]);
+        NodeType node = graph.getNodeData(targets[e]);
+        EdgeType edge = graph.getEdge(previous, node);
+        cost += edge.doubleValue();
+        tree.settle(node, previous, edge, cost);
+      }
+    }
+    return tree;
+  }
+
+  /**
+   * Forwarded to the wrapped graph, since the hierarchy only finds paths between two nodes.
+   */
+  @Override
+  public ShortestPathTree<NodeType, EdgeType> shortestPathTree(NodeType start) {
+    return graph.shortestPathTree(start);
+  }
+
+  /**
+   * Forwarded to the wrapped graph, since the hierarchy only finds paths between two nodes.
+   */
+  @Override
+  public ShortestPathTree<NodeType, EdgeType> nearestTree(NodeType start,
+      Predicate<NodeType> isTarget, int k) {
+    return graph.nearestTree(start, isTarget, k);
+  }
+
+  /**
+   * Forwarded to the wrapped graph, since the hierarchy only finds paths between two nodes.
+   */
+  @Override
+  public ShortestPathTree<NodeType, EdgeType> boundedTree(NodeType start, double maxCost) {
+    return graph.boundedTree(start, maxCost);
+  }
+
+  /**
+   * Finds the shortest path between two nodes by searching up the hierarchy from both of them at
+   * once. Each step settles a node on whichever side has the lower queued cost, and each side stops
+   * once its lowest queued cost is at least that of the cheapest path found so far through a node
+   * that both sides have reached.
+   *
+   * A side does not follow the edges of a node that it reached more cheaply by coming back down
+   * from a more important node it has already reached (stalling on demand): no shortest path from
+   * that side passes through the node at the cost it was queued with, so nor does any path that
+   * continues from it.
+   *
+   * @param start the id of the node the path starts from
+   * @param end   the id of the node the path ends at
+   * @return the original edges along the shortest path in order, which is empty when start is end,
+   *         or null when there is no path
+   */
+  private int[] pathBetween(int start, int end) {
+    QuerySpace space = querySpaces.get();
+    space.reset(nodeCount);
+    space.reachForward(start, 0, -1);
+    space.reachBackward(end, 0, -1);
+    double best = start == end ? 0 : Double.POSITIVE_INFINITY;
+    int meeting = start == end ? start : -1;
+
+    while (true) {
+      boolean forward = !space.forwardHeap.isEmpty()
+          && space.forwardHeap.peekPriority() < best;
+      boolean backward = !space.backwardHeap.isEmpty()
+          && space.backwardHeap.peekPriority() < best;
+      if (!forward && !backward)
+        break;
+      if (forward && backward)
+        forward = space.forwardHeap.peekPriority() <= space.backwardHeap.peekPriority();
+      if (forward) {
+        int node = space.forwardHeap.poll();
+        double cost = space.forwardCost[node];
+        if (space.isReachedBackward(node) && cost + space.backwardCost[node] < best) {
+          best = cost + space.backwardCost[node];
+          meeting = node;
+        }
+        if (isStalled(node, cost, downOffsets, downNeighbors, downWeights, space.forwardCost,
+            space.forwardReachedBy, space.stamp))
+          continue;
+        for (int i = upOffsets[node]; i < upOffsets[node + 1]; i++)
+          space.reachForward(upNeighbors[i], cost + upWeights[i], upEdges[i]);
+      } else {
+        int node = space.backwardHeap.poll();
+        double cost = space.backwardCost[node];
+        if (space.isReachedForward(node) && cost + space.forwardCost[node] < best) {
+          best = cost + space.forwardCost[node];
+          meeting = node;
+        }
+        if (isStalled(node, cost, upOffsets, upNeighbors, upWeights, space.backwardCost,
+            space.backwardReachedBy, space.stamp))
+          continue;
+        for (int i = downOffsets[node]; i < downOffsets[node + 1]; i++)
+          space.reachBackward(downNeighbors[i], cost + downWeights[i], downEdges[i]);
+      }
+    }
+    if (meeting < 0)
+      return null;
+
+    // the hierarchy's edges from start up to the meeting node, and from there down to end
+    List<Integer> edges = new ArrayList<>();
+    for (int node = meeting; node != start; node = sources[space.forwardEdge[node]])
+      edges.add(space.forwardEdge[node]);
+    Collections.reverse(edges);
+    for (int node = meeting; node != end; node = targets[space.backwardEdge[node]])
+      edges.add(space.backwardEdge[node]);
+
+    // replace each shortcut with the two edges it stands for, until only original edges remain
+    int[] path = new int[8];
+    int length = 0;
+    int[] stack = new int[16];
+    for (int edge : edges) {
+      int depth = 0;
+      stack[depth++] = edge;
+      while (depth > 0) {
+        int e = stack[--depth];
+        if (firsts[e] < 0) {
+          if (length == path.length)
+            path = Arrays.copyOf(path, length * 2);
+          path[length++] = e;
+          continue;
+        }
+        if (depth + 2 > stack.length)
+          stack = Arrays.copyOf(stack, stack.length * 2);
+        stack[depth++] = seconds[e];
+        stack[depth++] = firsts[e];
+      }
+    }
+    return Arrays.copyOf(path, length);
+  }
+
+  // returns whether one side of a query reached a node more cheaply than cost through an edge
+  // coming back down from a more important node, given that side's edges toward less important
+  // nodes (as rows of offsets, neighbors, and weights) and its costs
+  private static boolean isStalled(int node, double cost, int[] offsets, int[] neighbors,
+      double[] edgeWeights, double[] costs, int[] reachedBy, int stamp) {
+    for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+      int neighbor = neighbors[i];
+      if (reachedBy[neighbor] == stamp && costs[neighbor] + edgeWeights[i] < cost)
+        return true;
+    }
+    return false;
+  }
+
+  // returns the id of the node containing data, which must be in the wrapped graph
+  private int idOf(NodeType data, String role) {
+    if (data == null || !graph.containsNode(data))
+      throw new NoSuchElementException(role + " node " + data + " does not exist.");
+    return graph.getNode(data).id;
+  }
+
+  /**
+   * Returns a number that changes whenever a graph's nodes, their order, or its edges change, to
+   * tell whether a saved hierarchy was built from the same graph.
+   *
+   * @param graph the graph to fingerprint
+   * @return the fingerprint
+   */
+  static long fingerprintOf(BaseGraph<?, ?> graph) {
+    long fingerprint = graph.getNodeCount();
+    for (int id = 0; id < graph.getNodeCount(); id++) {
+      BaseGraph<?, ?>.Node node = graph.nodesById.get(id);
+      fingerprint = fingerprint * 31 + node.data.hashCode();
+      for (BaseGraph<?, ?>.Edge edge : node.edgesLeaving) {
+        fingerprint = fingerprint * 31 + edge.successor.id;
+        fingerprint = fingerprint * 31
+            + Double.doubleToLongBits(edge.data.doubleValue());
+      }
+    }
+    return fingerprint;
+  }
+
+  // makes room for at least needed more bytes in out, writing its contents when it is full
+  private static ByteBuffer flushIfFull(FileChannel channel, ByteBuffer out, int needed)
+      throws IOException {
+    if (out.remaining() < needed)
+      flush(channel, out);
+    return out;
+  }
+
+  // writes the contents of out to the channel, leaving out empty
+  private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+    out.flip();
+    while (out.hasRemaining())
+      channel.write(out);
+    out.clear();
+  }
+
+  @Override
+  public boolean insertNode(NodeType data) {
+    modified = true;
+    return graph.insertNode(data);
+  }
+
+  @Override
+  public boolean removeNode(NodeType data) {
+    modified = true;
+    return graph.removeNode(data);
+  }
+
+  @Override
+  public boolean containsNode(NodeType data) {
+    return graph.containsNode(data);
+  }
+
+  @Override
+  public List<NodeType> getAllNodes() {
+    return graph.getAllNodes();
+  }
+
+  @Override
+  public int getNodeCount() {
+    return graph.getNodeCount();
+  }
+
+  @Override
+  public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+    modified = true;
+    return graph.insertEdge(pred, succ, weight);
+  }
+
+  @Override
+  public boolean removeEdge(NodeType pred, NodeType succ) {
+    modified = true;
+    return graph.removeEdge(pred, succ);
+  }
+
+  @Override
+  public boolean containsEdge(NodeType pred, NodeType succ) {
+    return graph.containsEdge(pred, succ);
+  }
+
+  @Override
+  public EdgeType getEdge(NodeType pred, NodeType succ) {
+    return graph.getEdge(pred, succ);
+  }
+
+  @Override
+  public int getEdgeCount() {
+    return graph.getEdgeCount();
+  }
+
+  /**
+   * The state of one query, kept in arrays indexed by node id that each thread reuses from one
+   * query to the next. As in DijkstraGraph's workspaces, each query is given a new stamp rather
+   * than clearing those arrays, and a node has only been reached by the current query when its
+   * entry in a reachedBy array holds that query's stamp.
+   */
+  private static class QuerySpace {
+    IndexedHeap forwardHeap = new IndexedHeap(16);
+    IndexedHeap backwardHeap = new IndexedHeap(16);
+    double[] forwardCost = new double[0];
+    double[] backwardCost = new double[0];
+    int[] forwardEdge = new int[0]; // the hierarchy edge into each node, or -1 at the start
+    int[] backwardEdge = new int[0]; // the hierarchy edge out of each node, or -1 at the end
+    int[] forwardReachedBy = new int[0];
+    int[] backwardReachedBy = new int[0];
+    int stamp = 0;
+
+    // prepares this workspace for a new query over nodeCount nodes
+    void reset(int nodeCount) {
+      forwardHeap.clear();
+      backwardHeap.clear();
+      forwardHeap.ensureCapacity(nodeCount);
+      backwardHeap.ensureCapacity(nodeCount);
+      if (forwardCost.length < nodeCount) {
+        forwardCost = new double[nodeCount];
+        backwardCost = new double[nodeCount];
+        forwardEdge = new int[nodeCount];
+        backwardEdge = new int[nodeCount];
+        forwardReachedBy = new int[nodeCount];
+        backwardReachedBy = new int[nodeCount];
+        stamp = 0;
+      }
+      if (++stamp == Integer.MAX_VALUE) {
+        // start the stamps over before they could repeat
+        Arrays.fill(forwardReachedBy, 0);
+        Arrays.fill(backwardReachedBy, 0);
+        stamp = 1;
+      }
+    }
+
+    boolean isReachedForward(int node) {
+      return forwardReachedBy[node] == stamp;
+    }
+
+    boolean isReachedBackward(int node) {
+      return backwardReachedBy[node] == stamp;
+    }
+
+    // queues a node for the forward search, unless it was already reached at no more than cost
+    void reachForward(int node, double cost, int edge) {
+      if (isReachedForward(node) && cost >= forwardCost[node])
+        return;
+      forwardReachedBy[node] = stamp;
+      forwardCost[node] = cost;
+      forwardEdge[node] = edge;
+      forwardHeap.offer(node, cost);
+    }
+
+    // queues a node for the backward search, unless it was already reached at no more than cost
+    void reachBackward(int node, double cost, int edge) {
+      if (isReachedBackward(node) && cost >= backwardCost[node])
+        return;
+      backwardReachedBy[node] = stamp;
+      backwardCost[node] = cost;
+      backwardEdge[node] = edge;
+      backwardHeap.offer(node, cost);
+    }
+  }
+
+  /**
+   * Contracts the nodes of a graph into a hierarchy, holding the edges of the graph that remains
+   * and every edge added along the way. Once contract() returns, it holds the finished hierarchy:
+   * each node's rank and every edge, which is also how a hierarchy is read back from a file.
+   */
+  private static class Contraction {
+    // the most nodes that a witness search settles before giving up, adding the shortcut instead,
+    // and a smaller limit for the searches that only estimate how many shortcuts a node would need
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int ESTIMATE_SETTLE_LIMIT = 50;
+    // a witness must be cheaper than a shortcut by this fraction to replace it, so that rounding in
+    // the sums of path costs can never leave out a shortcut that a shortest path needs
+    private static final double SLACK = 1e-12;
+
+    final int nodeCount;
+    int[] ranks;
+    int edgeCount = 0;
+    int[] sources;
+    int[] targets;
+    double[] weights;
+    int[] firsts;
+    int[] seconds;
+
+    // the edges leaving and entering each node that has not been contracted, among the remaining
+    // nodes only
+    private int[][] leaving;
+    private int[] leavingCount;
+    private int[][] entering;
+    private int[] enteringCount;
+    private boolean[] contracted;
+    private int[] priorities;
+    private int[] contractedNeighbors;
+    private ThreadLocal<WitnessSearch> witnessSearches;
+
+    // prepares to read a hierarchy with these counts into its arrays
+    Contraction(int nodeCount, int edgeCount) {
+      this.nodeCount = nodeCount;
+      this.ranks = new int[nodeCount];
+      this.sources = new int[edgeCount];
+      this.targets = new int[edgeCount];
+      this.weights = new double[edgeCount];
+      this.firsts = new int[edgeCount];
+      this.seconds = new int[edgeCount];
+    }
+
+    // prepares to contract the nodes of a graph, starting from its edges (other than loops)
+    Contraction(BaseGraph<?, ?> graph) {
+      this(graph.getNodeCount(), Math.max(graph.getEdgeCount(), 16));
+      leaving = new int[nodeCount][];
+      entering = new int[nodeCount][];
+      leavingCount = new int[nodeCount];
+      enteringCount = new int[nodeCount];
+      for (int v = 0; v < nodeCount; v++) {
+        BaseGraph<?, ?>.Node node = graph.nodesById.get(v);
+        leaving[v] = new int[Math.max(node.edgesLeaving.size(), 2)];
+        entering[v] = new int[Math.max(node.edgesEntering.size(), 2)];
+      }
+      for (int v = 0; v < nodeCount; v++) {
+        for (BaseGraph<?, ?>.Edge edge : graph.nodesById.get(v).edgesLeaving) {
+          if (edge.successor.id != v)
+            addEdge(v, edge.successor.id, edge.data.doubleValue(), -1, -1);
+        }
+      }
+      contracted = new boolean[nodeCount];
+      priorities = new int[nodeCount];
+      contractedNeighbors = new int[nodeCount];
+      witnessSearches = ThreadLocal.withInitial(() -> new WitnessSearch(nodeCount));
+    }
+
+    /**
+     * Contracts every node, in rounds of nodes that are each less important than all of their
+     * remaining neighbors.
+     *
+     * @return this contraction, holding the finished hierarchy
+     */
+    Contraction contract() {
+      IntStream.range(0, nodeCount).parallel().forEach(v -> priorities[v] = priorityOf(v));
+      int[] remaining = IntStream.range(0, nodeCount).toArray();
+      int remainingCount = nodeCount;
+      int rank = 0;
+      int[] touchedBy = new int[nodeCount]; // the last round (from 1) that touched each node
+      int round = 0;
+      while (remainingCount > 0) {
+        round++;
+        int[] chosen = Arrays.stream(remaining, 0, remainingCount).parallel()
+            .filter(this::isLocalMinimum).toArray();
+        double[][] found = new double[chosen.length][];
+        IntStream.range(0, chosen.length).parallel()
+            .forEach(i -> found[i] = shortcutsOf(chosen[i], WITNESS_SETTLE_LIMIT));
+
+        // take the chosen nodes out of the graph, then add their shortcuts between the rest
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (int v : chosen) {
+          ranks[v] = rank++;
+          contracted[v] = true;
+          for (int i = 0; i < leavingCount[v]; i++) {
+            int neighbor = targets[leaving[v][i]];
+            removeFrom(entering, enteringCount, neighbor, leaving[v][i]);
+            if (touchedBy[neighbor] != round) {
+              touchedBy[neighbor] = round;
+              contractedNeighbors[neighbor]++;
+              touched = append(touched, touchedCount++, neighbor);
+            }
+          }
+          for (int i = 0; i < enteringCount[v]; i++) {
+            int neighbor = sources[entering[v][i]];
+            removeFrom(leaving, leavingCount, neighbor, entering[v][i]);
+            if (touchedBy[neighbor] != round) {
+              touchedBy[neighbor] = round;
+              contractedNeighbors[neighbor]++;
+              touched = append(touched, touchedCount++, neighbor);
+            }
+          }
+          leaving[v] = null;
+          entering[v] = null;
+        }
+        for (double[] shortcuts : found) {
+          for (int i = 0; i < shortcuts.length; i += 5)
+            addShortcut((int) shortcuts[i], (int) shortcuts[i + 1], shortcuts[i + 2],
+                (int) shortcuts[i + 3], (int) shortcuts[i + 4]);
+        }
+
+        // the neighbors of contracted nodes have lost edges and may have gained shortcuts
+        int[] neighbors = Arrays.copyOf(touched, touchedCount);
+        Arrays.stream(neighbors).parallel().filter(v -> !contracted[v])
+            .forEach(v -> priorities[v] = priorityOf(v));
+        int kept = 0;
+        for (int i = 0; i < remainingCount; i++) {
+          if (!contracted[remaining[i]])
+            remaining[kept++] = remaining[i];
+        }
+        remainingCount = kept;
+      }
+      return this;
+    }
+
+    // returns whether a node is less important than all of its remaining neighbors
+    private boolean isLocalMinimum(int v) {
+      for (int i = 0; i < leavingCount[v]; i++) {
+        if (isBefore(targets[leaving[v][i]], v))
+          return false;
+      }
+      for (int i = 0; i < enteringCount[v]; i++) {
+        if (isBefore(sources[entering[v][i]], v))
+          return false;
+      }
+      return true;
+    }
+
+    // returns whether node a comes before node b in contraction order, breaking ties by id
+    private boolean isBefore(int a, int b) {
+      return priorities[a] < priorities[b] || (priorities[a] == priorities[b] && a < b);
+    }
+
+    // returns the importance of a node: its edge difference, plus its contracted neighbors
+    private int priorityOf(int v) {
+      int shortcuts = shortcutsOf(v, ESTIMATE_SETTLE_LIMIT).length / 5;
+      return shortcuts - leavingCount[v] - enteringCount[v] + contractedNeighbors[v];
+    }
+
+    /**
+     * Finds the shortcuts that contracting a node needs: one for each pair of an edge entering it
+     * and an edge leaving it, unless a witness search from the entering edge's source finds
+     * another path to the leaving edge's target that is cheaper, without passing through the node.
+     *
+     * @param v     the node to contract
+     * @param limit the most nodes that each witness search settles
+     * @return five numbers for each shortcut: its source, target, and weight, and the entering and
+     *         leaving edges that it stands for
+     */
+    private double[] shortcutsOf(int v, int limit) {
+      double[] shortcuts = new double[0];
+      int count = 0;
+      WitnessSearch search = witnessSearches.get();
+      for (int i = 0; i < enteringCount[v]; i++) {
+        int in = entering[v][i];
+        int source = sources[in];
+        double maxCost = 0;
+        for (int j = 0; j < leavingCount[v]; j++)
+          maxCost = Math.max(maxCost, weights[in] + weights[leaving[v][j]]);
+        search.run(this, source, v, maxCost, limit);
+        for (int j = 0; j < leavingCount[v]; j++) {
+          int target = targets[leaving[v][j]];
+          double cost = weights[in] + weights[leaving[v][j]];
+          if (target == source || search.costTo(target) < cost * (1 - SLACK))
+            continue;
+          if (count + 5 > shortcuts.length)
+            shortcuts = Arrays.copyOf(shortcuts, Math.max(10, shortcuts.length * 2));
+          shortcuts[count++] = source;
+          shortcuts[count++] = target;
+          shortcuts[count++] = cost;
+          shortcuts[count++] = in;
+          shortcuts[count++] = leaving[v][j];
+        }
+      }
+      return Arrays.copyOf(shortcuts, count);
+    }
+
+    // adds a shortcut from source to target standing for two edges, or lowers the weight of the
+    // edge already between them (which no earlier shortcut stands for) to that shortcut's
+    private void addShortcut(int source, int target, double weight, int first, int second) {
+      for (int i = 0; i < leavingCount[source]; i++) {
+        int e = leaving[source][i];
+        if (targets[e] == target) {
+          if (weight < weights[e]) {
+            weights[e] = weight;
+            firsts[e] = first;
+            seconds[e] = second;
+          }
+          return;
+        }
+      }
+      addEdge(source, target, weight, first, second);
+    }
+
+    // adds an edge among the remaining nodes, returning its index
+    private int addEdge(int source, int target, double weight, int first, int second) {
+      if (edgeCount == sources.length) {
+        int grown = edgeCount * 2;
+        sources = Arrays.copyOf(sources, grown);
+        targets = Arrays.copyOf(targets, grown);
+        weights = Arrays.copyOf(weights, grown);
+        firsts = Arrays.copyOf(firsts, grown);
+        seconds = Arrays.copyOf(seconds, grown);
+      }
+      int e = edgeCount++;
+      sources[e] = source;
+      targets[e] = target;
+      weights[e] = weight;
+      firsts[e] = first;
+      seconds[e] = second;
+      leaving[source] = append(leaving[source], leavingCount[source]++, e);
+      entering[target] = append(entering[target], enteringCount[target]++, e);
+      return e;
+    }
+
+    // removes an edge from a node's list of edges, by moving the last edge into its place
+    private static void removeFrom(int[][] lists, int[] counts, int node, int edge) {
+      int[] list = lists[node];
+      for (int i = 0; i < counts[node]; i++) {
+        if (list[i] == edge) {
+          list[i] = list[--counts[node]];
+          return;
+        }
+      }
+    }
+
+    // stores a value at an index of an array, growing the array first when it is full
+    private static int[] append(int[] array, int index, int value) {
+      if (index == array.length)
+        array = Arrays.copyOf(array, Math.max(2, array.length * 2));
+      array[index] = value;
+      return array;
+    }
+  }
+
+  /**
+   * A bounded Dijkstra search among the remaining nodes of a contraction, which each thread reuses
+   * for its witness searches.
+   */
+  private static class WitnessSearch {
+    private final IndexedHeap heap;
+    private final double[] cost;
+    private final int[] reachedBy;
+    private final int[] targetedBy; // the stamp of the last search that each node was a target of
+    private int stamp = 0;
+
+    WitnessSearch(int nodeCount) {
+      heap = new IndexedHeap(nodeCount);
+      cost = new double[nodeCount];
+      reachedBy = new int[nodeCount];
+      targetedBy = new int[nodeCount];
+    }
+
+    /**
+     * Searches from a source without passing through a node that is being contracted, for paths
+     * to the targets of that node's leaving edges. The search stops once every target is settled,
+     * after the settle limit, or when no more nodes within maxCost are left.
+     */
+    void run(Contraction contraction, int source, int avoid, double maxCost, int limit) {
+      heap.clear();
+      if (++stamp == Integer.MAX_VALUE) {
+        // start the stamps over before they could repeat
+        Arrays.fill(reachedBy, 0);
+        Arrays.fill(targetedBy, 0);
+        stamp = 1;
+      }
+      int remaining = 0;
+      for (int i = 0; i < contraction.leavingCount[avoid]; i++) {
+        int target = contraction.targets[contraction.leaving[avoid][i]];
+        if (target != source && targetedBy[target] != stamp) {
+          targetedBy[target] = stamp;
+          remaining++;
+        }
+      }
+      reachedBy[source] = stamp;
+      cost[source] = 0;
+      heap.offer(source, 0);
+      int settled = 0;
+      while (!heap.isEmpty() && remaining > 0 && settled++ < limit) {
+        int node = heap.poll();
+        if (targetedBy[node] == stamp)
+          remaining--;
+        double nodeCost = cost[node];
+        int[] edges = contraction.leaving[node];
+        for (int i = 0; i < contraction.leavingCount[node]; i++) {
+          int e = edges[i];
+          int neighbor = contraction.targets[e];
+          if (neighbor == avoid)
+            continue;
+          double newCost = nodeCost + contraction.weights[e];
+          if (newCost > maxCost || (reachedBy[neighbor] == stamp && newCost >= cost[neighbor]))
+            continue;
+          reachedBy[neighbor] = stamp;
+          cost[neighbor] = newCost;
+          heap.offer(neighbor, newCost);
+        }
+      }
+    }
+
+    // returns the cost of the cheapest path found to a node by the last search, or infinity
+    double costTo(int node) {
+      return reachedBy[node] == stamp ? cost[node] : Double.POSITIVE_INFINITY;
+    }
+  }
+}
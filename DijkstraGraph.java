@@ -7,6 +7,8 @@
 // Notes to Grader: <optional extra notes>
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,11 +36,17 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
     public Node node;
     public double cost;
     public SearchNode predecessor;
+    public Edge edge; // the edge from predecessor to node, or null for the start node
 
     public SearchNode(Node node, double cost, SearchNode predecessor) {
+      this(node, cost, predecessor, null);
+    }
+
+    public SearchNode(Node node, double cost, SearchNode predecessor, Edge edge) {
       this.node = node;
       this.cost = cost;
       this.predecessor = predecessor;
+      this.edge = edge;
     }
 
     public int compareTo(SearchNode other) {
@@ -50,6 +58,136 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
     }
   }
 
+  /**
+   * The state of one search, kept in arrays indexed by node id that each thread reuses from one
+   * search to the next, so that a search allocates nothing per node. Rather than clearing those
+   * arrays, each search is given a new stamp, and a node has only been reached by the current
+   * search when its entry in reachedBy holds that search's stamp.
+   *
+   * Workspaces are shared by every graph, and hold no references to a graph or its edges once a
+   * search is done with them, so that a thread's workspace never keeps an old graph reachable.
+   */
+  protected static class Workspace {
+    public IndexedHeap heap = new IndexedHeap(16);
+    public double[] cost = new double[0]; // the cost of the cheapest path found to each node
+    public Object[] edges = new Object[0]; // the edge into each node along that path
+    public int[] reachedBy = new int[0]; // the stamp of the last search that reached each node
+    public int[] settled = new int[0]; // the ids of the settled nodes, in the order settled
+    public int settledCount = 0;
+    public int[] reached = new int[0]; // the ids of the nodes reached, to clear their edges
+    public int reachedCount = 0;
+    public int stamp = 0;
+    public boolean inUse = false;
+    public Workspace partner = null; // the backward half of searches from both ends
+
+    // prepares this workspace for a new search over nodeCount nodes
+    public void reset(int nodeCount) {
+      heap.clear();
+      heap.ensureCapacity(nodeCount);
+      if (cost.length < nodeCount) {
+        int capacity = Math.max(nodeCount, cost.length * 2);
+        cost = new double[capacity];
+        edges = new Object[capacity];
+        reachedBy = new int[capacity];
+        settled = new int[capacity];
+        reached = new int[capacity];
+        stamp = 0;
+      }
+      settledCount = 0;
+      reachedCount = 0;
+      if (++stamp == Integer.MAX_VALUE) {
+        //Start the stamps over before they could repeat
+        Arrays.fill(reachedBy, 0);
+        stamp = 1;
+      }
+    }
+
+    // records the cheapest path found so far to a node
+    public void reach(int id, double pathCost, Object edge) {
+      if (reachedBy[id] != stamp)
+        reached[reachedCount++] = id;
+      reachedBy[id] = stamp;
+      cost[id] = pathCost;
+      edges[id] = edge;
+    }
+
+    public boolean isReached(int id) {
+      return reachedBy[id] == stamp;
+    }
+
+    public boolean isSettled(int id) {
+      return isReached(id) && !heap.contains(id);
+    }
+
+    // forgets the edges recorded by the last search
+    public void clearEdges() {
+      for (int i = 0; i < reachedCount; i++)
+        edges[reached[i]] = null;
+    }
+  }
+
+  // each thread's search workspace
+  private static final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+  /**
+   * The shortest path costs between a few chosen landmark nodes and every node of a graph, in both
+   * directions, from which a lower bound on the cost of any path can be read. By the triangle
+   * inequality, a path from v to t costs at least d(L, t) - d(L, v) and at least d(v, L) - d(t, L)
+   * for every landmark L, and the largest of those bounds guides the search toward t.
+   *
+   * Costs are stored by node and then by landmark, so that all of one node's costs are next to each
+   * other in memory, with infinity for paths that do not exist.
+   */
+  protected static class Landmarks {
+    // lower bounds are shrunk by this fraction, so that rounding in the sums of path costs can
+    // never make a bound larger than the true cost
+    private static final double SLACK = 1e-9;
+
+    public final int[] ids; // the id of each landmark node
+    public final double[] from; // d(L, v), at v * ids.length + L
+    public final double[] to; // d(v, L), at v * ids.length + L
+    public final int modCount; // the graph's modification count when these costs were found
+
+    public Landmarks(int[] ids, double[] from, double[] to, int modCount) {
+      this.ids = ids;
+      this.from = from;
+      this.to = to;
+      this.modCount = modCount;
+    }
+
+    /**
+     * Returns a lower bound on the cost of every path from a node to a target, or infinity when the
+     * landmarks show that there is no such path.
+     *
+     * @param node   the id of the node the path starts from
+     * @param target the id of the node the path ends at
+     * @return the lower bound
+     */
+    public double lowerBound(int node, int target) {
+      int count = ids.length;
+      int v = node * count;
+      int t = target * count;
+      double bound = 0;
+      for (int i = 0; i < count; i++) {
+        //A difference of two infinities is NaN, and bounds nothing
+        double ahead = from[t + i] - from[v + i];
+        if (ahead > bound) {
+          bound = ahead;
+        }
+        double behind = to[v + i] - to[t + i];
+        if (behind > bound) {
+          bound = behind;
+        }
+      }
+      return bound * (1 - SLACK);
+    }
+  }
+
+  // whether point-to-point paths are found by searching from both ends at once
+  private volatile boolean bidirectional = false;
+  // the landmarks that guide point-to-point searches, or null to search without them
+  private volatile Landmarks landmarks = null;
+
   /**
    * Constructor that sets the map that the graph uses.
    */
@@ -57,12 +195,135 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
     super(new HashtableMap<>());
   }
 
+  /**
+   * Sets how this graph finds the shortest path between two nodes: by searching forward from the
+   * start until the end is settled (the default), or by searching from both ends at once (see
+   * bidirectionalPath). Both find paths of the same cost, but where several paths tie for the
+   * shortest, they may not pick the same one.
+   *
+   * @param bidirectional true to search from both ends at once, or false to search forward
+   */
+  public void setBidirectional(boolean bidirectional) {
+    this.bidirectional = bidirectional;
+  }
+
+  /**
+   * Chooses landmark nodes and finds the shortest path costs from each of them to every node and
+   * from every node to each of them, so that the shortest path between two nodes can then be found
+   * by an A* search guided by those costs (see landmarkPath). Until this graph is next changed,
+   * that search is used instead of the forward or bidirectional one: both find paths of the same
+   * cost, but where several paths tie for the shortest, they may not pick the same one.
+   *
+   * Landmarks are chosen farthest first: the first is the node farthest from an arbitrary node, and
+   * each next one is the node farthest from its nearest landmark chosen so far. Landmarks on the
+   * edges of the graph give the best bounds for paths that lead toward or away from them. Each
+   * choice depends on the searches from the landmarks before it, so those searches run one after
+   * another, while the searches toward each landmark run in parallel on the common fork-join pool
+   * as soon as it is chosen.
+   *
+   * @param count the number of landmarks to choose (at most one per node), or 0 to stop using them
+   * @return the number of landmarks chosen
+   */
+  public int computeLandmarks(int count) {
+    int nodeCount = nodesById.size();
+    count = Math.min(count, nodeCount);
+    if (count <= 0) {
+      landmarks = null;
+      return 0;
+    }
+    int version = modCount;
+    int[] ids = new int[count];
+    double[][] from = new double[count][];
+    List<CompletableFuture<double[]>> to = new ArrayList<>();
+
+    //Start from the node farthest from an arbitrary one, then repeatedly take the node farthest
+    //from every landmark so far (preferring nodes that none of them can reach)
+    double[] nearest = distancesFrom(nodesById.get(0), false);
+    for (int i = 0; i < count; i++) {
+      int farthest = 0;
+      for (int id = 1; id < nodeCount; id++) {
+        if (nearest[id] > nearest[farthest]) {
+          farthest = id;
+        }
+      }
+      Node landmark = nodesById.get(farthest);
+      ids[i] = farthest;
+      to.add(CompletableFuture.supplyAsync(() -> distancesFrom(landmark, true)));
+      from[i] = distancesFrom(landmark, false);
+      if (i == 0) {
+        nearest = from[0].clone();
+      } else {
+        for (int id = 0; id < nodeCount; id++) {
+          nearest[id] = Math.min(nearest[id], from[i][id]);
+        }
+      }
+      nearest[farthest] = -1; // never chosen twice, even when nothing else is left
+    }
+
+    //Store the costs by node, so that one node's costs to every landmark are read together
+    double[] fromByNode = new double[nodeCount * count];
+    double[] toByNode = new double[nodeCount * count];
+    for (int i = 0; i < count; i++) {
+      double[] toLandmark = to.get(i).join();
+      for (int id = 0; id < nodeCount; id++) {
+        fromByNode[id * count + i] = from[i][id];
+        toByNode[id * count + i] = toLandmark[id];
+      }
+    }
+    landmarks = new Landmarks(ids, fromByNode, toByNode, version);
+    return count;
+  }
+
+  /**
+   * @return the number of landmarks guiding searches for the shortest path between two nodes, which
+   *         is 0 when there are none or when this graph has changed since they were chosen
+   */
+  public int getLandmarkCount() {
+    Landmarks current = currentLandmarks();
+    return current == null ? 0 : current.ids.length;
+  }
+
+  // returns the landmarks, unless there are none or they were chosen before this graph last changed
+  private Landmarks currentLandmarks() {
+    Landmarks current = landmarks;
+    return current != null && current.modCount == modCount ? current : null;
+  }
+
+  // returns the cost of the shortest path from source to each node (or from each node to source
+  // when backward), which is infinity for nodes with no such path
+  private double[] distancesFrom(Node source, boolean backward) {
+    double[] cost = new double[nodesById.size()];
+    Arrays.fill(cost, Double.POSITIVE_INFINITY);
+    IndexedHeap candidates = new IndexedHeap(nodesById.size());
+    Adjacency adjacency = adjacency();
+    int[] start = backward ? adjacency.enteringStart : adjacency.leavingStart;
+    int[] other = backward ? adjacency.enteringOther : adjacency.leavingOther;
+    double[] weight = backward ? adjacency.enteringWeight : adjacency.leavingWeight;
+    cost[source.id] = 0;
+    candidates.offer(source.id, 0);
+    while (!candidates.isEmpty()) {
+      int currentId = candidates.poll();
+      double currentCost = cost[currentId];
+      for (int i = start[currentId]; i < start[currentId + 1]; i++) {
+        int neighbor = other[i];
+        double newCost = currentCost + weight[i];
+        if (newCost < cost[neighbor]) {
+          cost[neighbor] = newCost;
+          candidates.offer(neighbor, newCost);
+        }
+      }
+    }
+    return cost;
+  }
+
   /**
    * This helper method creates a network of SearchNodes while computing the shortest path between
    * the provided start and end locations. The SearchNode that is returned by this method is
    * represented at the end of the shortest path that is found: it's cost is the cost of that
    * shortest path, and the nodes linked together through predecessor references represent all of
-   * the nodes along that shortest path (ordered from end to start).
+   * the nodes along that shortest path (ordered from end to start). The path is found by a search
+   * from both ends at once or by an A* search guided by landmarks when this graph is set to, or
+   * otherwise by a forward search.
    *
    * @param start the data item in the starting node for the path
    * @param end   the data item in the destination node for the path
@@ -71,50 +332,450 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
    *                                end data do not correspond to a graph node
    */
   protected SearchNode computeShortestPath(NodeType start, NodeType end) {
-    if (!nodes.containsKey(start) || !nodes.containsKey(end)) {
+    Node startNode = getNode(start);
+    Node endNode = getNode(end);
+    if (startNode == null || endNode == null) {
       throw new NoSuchElementException("Start or end node does not exist.");
     }
+    List<Edge> path = pathBetween(startNode, endNode);
+    if (path == null) {
+      //NoSuchElementException if path isn't found
+      throw new NoSuchElementException("No path found from start to end.");
+    }
 
-    //Queue of nodes to be explored
-    PriorityQueue<SearchNode> candidates =
-        new PriorityQueue<>(Comparator.comparingDouble(n -> n.cost));
+    //Link SearchNodes along the path found, adding up its costs from the start node
+    SearchNode current = new SearchNode(startNode, 0, null);
+    for (Edge edge : path) {
+      current = new SearchNode(edge.successor, current.cost + edge.data.doubleValue(), current,
+          edge);
+    }
+    return current;
+  }
 
-    //Set to keep track of visited nodes
-    Set<NodeType> visited = new HashSet<>();
+  /**
+   * Reads the path from the edges that the search between start and end left behind, found the
+   * same way as computeShortestPath finds it, so no tree is built for the nodes it visited.
+   */
+  @Override
+  public boolean shortestPath(NodeType start, NodeType end, List<NodeType> nodes,
+      List<EdgeType> edges) {
+    Node startNode = getNode(start);
+    Node endNode = getNode(end);
+    if (startNode == null || endNode == null) {
+      return false;
+    }
+    List<Edge> path = pathBetween(startNode, endNode);
+    if (path == null) {
+      return false;
+    }
+    nodes.add(startNode.data);
+    for (Edge edge : path) {
+      nodes.add(edge.successor.data);
+      edges.add(edge.data);
+    }
+    return true;
+  }
 
-    //Add start node with weight of 0
-    candidates.add(new SearchNode(nodes.get(start), 0, null));
+  // finds the edges along the shortest path from startNode to endNode, or null when there is none
+  private List<Edge> pathBetween(Node startNode, Node endNode) {
+    Landmarks current = currentLandmarks();
+    if (current != null) {
+      return landmarkPath(current, startNode, endNode);
+    }
+    if (bidirectional) {
+      return bidirectionalPath(startNode, endNode);
+    }
+    //Search forward until the end node is settled
+    Workspace workspace = acquireWorkspace();
+    try {
+      search(workspace, startNode, node -> node == endNode, 1, Double.POSITIVE_INFINITY);
+      if (!workspace.isSettled(endNode.id)) {
+        return null;
+      }
+      List<Edge> path = new ArrayList<>();
+      for (Node node = endNode; node != startNode; ) {
+        Edge edge = edgeTo(workspace, node.id);
+        path.add(edge);
+        node = edge.predecessor;
+      }
+      Collections.reverse(path);
+      return path;
+    } finally {
+      releaseWorkspace(workspace);
+    }
+  }
 
-    while (!candidates.isEmpty()) {
-      //Get  node with lowest cost
-      SearchNode currentNode = candidates.poll();
-      Node currentGraphNode = currentNode.node;
+  /**
+   * Finds the shortest path from startNode to endNode by searching forward from startNode (along
+   * edgesLeaving) and backward from endNode (along edgesEntering) at once, each step expanding
+   * whichever frontier has fewer queued nodes. Every edge scanned that joins the two searches
+   * gives a path from start to end, and the cheapest of those is kept. The searches stop as soon
+   * as the lowest queued costs on both sides add up to at least that path's cost, since no path
+   * through a node that neither side has settled can be any cheaper. On a long path, the two
+   * searches meet after each settling only the nodes around its own end, rather than everything
+   * within the whole path's cost of the start.
+   *
+   * Costs along the returned path are added up from the start, just as a forward search adds them.
+   *
+   * @param startNode the node the path starts from
+   * @param endNode   the node the path ends at
+   * @return the edges along the shortest path in order, which is empty when startNode is endNode,
+   *         or null when there is no path
+   */
+  protected List<Edge> bidirectionalPath(Node startNode, Node endNode) {
+    if (startNode == endNode) {
+      return new ArrayList<>();
+    }
+    Workspace forward = acquireWorkspace();
+    if (forward.partner == null) {
+      forward.partner = new Workspace();
+    }
+    Workspace backward = forward.partner;
+    Adjacency adjacency = adjacency();
+    try {
+      forward.reset(nodesById.size());
+      backward.reset(nodesById.size());
+      forward.reach(startNode.id, 0, null);
+      forward.heap.offer(startNode.id, 0);
+      backward.reach(endNode.id, 0, null);
+      backward.heap.offer(endNode.id, 0);
+
+      //The cheapest path found so far, through the edge that joins its two halves
+      double best = Double.POSITIVE_INFINITY;
+      Object meeting = null;
+      while (!forward.heap.isEmpty() && !backward.heap.isEmpty()
+          && forward.heap.peekPriority() + backward.heap.peekPriority() < best) {
+        boolean fromStart = forward.heap.size() <= backward.heap.size();
+        Workspace side = fromStart ? forward : backward;
+        Workspace other = fromStart ? backward : forward;
+        int[] start = fromStart ? adjacency.leavingStart : adjacency.enteringStart;
+        int[] ends = fromStart ? adjacency.leavingOther : adjacency.enteringOther;
+        double[] weight = fromStart ? adjacency.leavingWeight : adjacency.enteringWeight;
+        Object[] edges = fromStart ? adjacency.leavingEdge : adjacency.enteringEdge;
+        int currentId = side.heap.poll();
+        double currentCost = side.cost[currentId];
+        side.settled[side.settledCount++] = currentId;
+
+        for (int i = start[currentId]; i < start[currentId + 1]; i++) {
+          int neighbor = ends[i];
+          double newCost = currentCost + weight[i];
+          if (!side.isReached(neighbor)
+              || (side.heap.contains(neighbor) && newCost < side.cost[neighbor])) {
+            side.reach(neighbor, newCost, edges[i]);
+            side.heap.offer(neighbor, newCost);
+          }
+          //Check whether this edge joins onto a path from the other end
+          if (other.isReached(neighbor) && newCost + other.cost[neighbor] < best) {
+            best = newCost + other.cost[neighbor];
+            meeting = edges[i];
+          }
+        }
+      }
+      if (meeting == null) {
+        return null;
+      }
+
+      //Join the forward path into the meeting edge with the backward path out of it
+      Edge joining = edgeTo(meeting);
+      List<Edge> path = new ArrayList<>();
+      for (Node node = joining.predecessor; node != startNode; ) {
+        Edge edge = edgeTo(forward, node.id);
+        path.add(edge);
+        node = edge.predecessor;
+      }
+      Collections.reverse(path);
+      path.add(joining);
+      for (Node node = joining.successor; node != endNode; ) {
+        Edge edge = edgeTo(backward, node.id);
+        path.add(edge);
+        node = edge.successor;
+      }
+      return path;
+    } finally {
+      backward.clearEdges();
+      releaseWorkspace(forward);
+    }
+  }
+
+  /**
+   * Finds the shortest path from startNode to endNode with an A* search, which settles nodes in
+   * order of their cost from startNode plus a lower bound on their remaining cost to endNode, read
+   * from the landmarks. Nodes that lead away from endNode are then settled late or never, so a
+   * long path settles only a small fraction of the nodes that a forward search would. Nodes that
+   * the landmarks show cannot reach endNode are never queued at all.
+   *
+   * Every lower bound is at most the true remaining cost, so the path is found once endNode is
+   * settled. A node is queued again if a cheaper path to it is found after it was settled, which
+   * the bounds' consistency only rules out up to rounding.
+   *
+   * @param current   the landmarks to read lower bounds from
+   * @param startNode the node the path starts from
+   * @param endNode   the node the path ends at
+   * @return the edges along the shortest path in order, which is empty when startNode is endNode,
+   *         or null when there is no path
+   */
+  protected List<Edge> landmarkPath(Landmarks current, Node startNode, Node endNode) {
+    Workspace workspace = acquireWorkspace();
+    try {
+      workspace.reset(nodesById.size());
+      IndexedHeap candidates = workspace.heap;
+      Adjacency adjacency = adjacency();
+      int target = endNode.id;
+      workspace.reach(startNode.id, 0, null);
+      candidates.offer(startNode.id, current.lowerBound(startNode.id, target));
 
-      //Skip node if already visited
-      if (visited.contains(currentGraphNode.data)) {
-        continue;
+      while (!candidates.isEmpty()) {
+        int currentId = candidates.poll();
+        //Only counted, since a node that is queued again is settled more than once
+        workspace.settledCount++;
+        if (currentId == target) {
+          break;
+        }
+        double currentCost = workspace.cost[currentId];
+        for (int i = adjacency.leavingStart[currentId]; i < adjacency.leavingStart[currentId + 1];
+            i++) {
+          int neighbor = adjacency.leavingOther[i];
+          double newCost = currentCost + adjacency.leavingWeight[i];
+          if (workspace.isReached(neighbor) && newCost >= workspace.cost[neighbor]) {
+            continue;
+          }
+          double bound = current.lowerBound(neighbor, target);
+          if (bound == Double.POSITIVE_INFINITY) {
+            continue;
+          }
+          workspace.reach(neighbor, newCost, adjacency.leavingEdge[i]);
+          candidates.offer(neighbor, newCost + bound);
+        }
+      }
+      if (!workspace.isReached(target) || candidates.contains(target)) {
+        return null;
+      }
+      List<Edge> path = new ArrayList<>();
+      for (Node node = endNode; node != startNode; ) {
+        Edge edge = edgeTo(workspace, node.id);
+        path.add(edge);
+        node = edge.predecessor;
       }
+      Collections.reverse(path);
+      return path;
+    } finally {
+      releaseWorkspace(workspace);
+    }
+  }
+
+  /**
+   * Returns the shortest paths from the node with the provided start value to every node with one
+   * of the provided end values, computed by a single search from start. This search stops as soon
+   * as all of those end nodes have been settled (or when no more nodes can be reached), and the
+   * returned tree holds every node settled up to that point. When this graph searches from both
+   * ends at once or is guided by landmarks, and there is just one end node, its path is found that
+   * way instead, and the returned tree holds only the nodes along that path.
+   *
+   * @param start the data item in the starting node for every path
+   * @param ends  the data items in the destination nodes for the paths
+   * @return the tree of shortest paths found from start
+   * @throws NoSuchElementException when start does not correspond to a graph node
+   */
+  public ShortestPathTree<NodeType, EdgeType> shortestPathTree(NodeType start,
+      Collection<NodeType> ends) {
+    Node startNode = getNode(start);
+    if (startNode == null) {
+      throw new NoSuchElementException("Start node does not exist.");
+    }
+
+    //Only end nodes within the graph can ever be settled
+    boolean[] isEnd = new boolean[nodesById.size()];
+    int remaining = 0;
+    for (NodeType end : ends) {
+      Node endNode = getNode(end);
+      if (endNode != null && !isEnd[endNode.id]) {
+        isEnd[endNode.id] = true;
+        remaining++;
+      }
+    }
+    if ((bidirectional || currentLandmarks() != null) && ends.size() == 1 && remaining == 1) {
+      return pathTree(startNode, getNode(ends.iterator().next()));
+    }
+    return searchTree(startNode, node -> isEnd[node.id], remaining, Double.POSITIVE_INFINITY);
+  }
+
+  // returns a tree holding only the shortest path from startNode to endNode, if there is one
+  private ShortestPathTree<NodeType, EdgeType> pathTree(Node startNode, Node endNode) {
+    ShortestPathTree<NodeType, EdgeType> tree = new ShortestPathTree<>(startNode.data);
+    List<Edge> path = pathBetween(startNode, endNode);
+    if (path != null) {
+      double cost = 0;
+      for (Edge edge : path) {
+        cost += edge.data.doubleValue();
+        tree.settle(edge.successor.data, edge.predecessor.data, edge.data, cost);
+      }
+    }
+    return tree;
+  }
+
+  /**
+   * Returns the shortest paths from the node with the provided start value to every node that can
+   * be reached from it. A single search settles that whole reachable set, and the returned tree
+   * records the cost, hop count, and predecessor of each of those nodes.
+   *
+   * @param start the data item in the starting node for every path
+   * @return the tree of shortest paths from start to every reachable node
+   * @throws NoSuchElementException when start does not correspond to a graph node
+   */
+  public ShortestPathTree<NodeType, EdgeType> shortestPathTree(NodeType start) {
+    Node startNode = getNode(start);
+    if (startNode == null) {
+      throw new NoSuchElementException("Start node does not exist.");
+    }
+    return searchTree(startNode, null, 0, Double.POSITIVE_INFINITY);
+  }
 
-      visited.add(currentGraphNode.data);
+  /**
+   * Returns the shortest paths from the node with the provided start value to its k nearest other
+   * nodes that satisfy isTarget. The search stops as soon as k of them have been settled, so only
+   * the nodes nearer than the k-th target are ever visited, and the returned tree holds every node
+   * settled up to that point.
+   *
+   * @param start    the data item in the starting node for every path
+   * @param isTarget whether a node's data makes it one of the targets
+   * @param k        the number of targets to stop after
+   * @return the tree of shortest paths found from start
+   * @throws NoSuchElementException when start does not correspond to a graph node
+   */
+  public ShortestPathTree<NodeType, EdgeType> nearestTree(NodeType start,
+      Predicate<NodeType> isTarget, int k) {
+    Node startNode = getNode(start);
+    if (startNode == null) {
+      throw new NoSuchElementException("Start node does not exist.");
+    }
+    return searchTree(startNode, node -> node != startNode && isTarget.test(node.data), k,
+        Double.POSITIVE_INFINITY);
+  }
 
-      //Return current node if the end has been reached
-      if (currentGraphNode.data.equals(end)) {
-        return currentNode;
+  /**
+   * Returns the shortest paths from the node with the provided start value to every node within
+   * maxCost of it. Edges that would lead past maxCost are never queued, so the search ends once
+   * every node within that cost has been settled, having only visited those nodes and their edges.
+   *
+   * @param start   the data item in the starting node for every path
+   * @param maxCost the largest path cost to include
+   * @return the tree of shortest paths from start to every node within maxCost of it
+   * @throws NoSuchElementException when start does not correspond to a graph node
+   */
+  public ShortestPathTree<NodeType, EdgeType> boundedTree(NodeType start, double maxCost) {
+    Node startNode = getNode(start);
+    if (startNode == null) {
+      throw new NoSuchElementException("Start node does not exist.");
+    }
+    return searchTree(startNode, null, 0, maxCost);
+  }
+
+  /**
+   * This helper method runs Dijkstra's algorithm from startNode, recording every settled node in
+   * the returned tree, until remaining nodes that satisfy isEnd have been settled (or, when isEnd
+   * is null, until every reachable node has been settled). Nodes whose cost would be more than
+   * maxCost are never reached.
+   *
+   * @param startNode the node every path starts from
+   * @param isEnd     whether a node is one to stop after, or null to settle every reachable node
+   * @param remaining the number of nodes satisfying isEnd to settle before stopping
+   * @param maxCost   the largest path cost to follow edges up to
+   * @return the tree of shortest paths found from startNode
+   */
+  protected ShortestPathTree<NodeType, EdgeType> searchTree(Node startNode, Predicate<Node> isEnd,
+      int remaining, double maxCost) {
+    Workspace workspace = acquireWorkspace();
+    try {
+      search(workspace, startNode, isEnd, remaining, maxCost);
+
+      //Record each settled node's shortest path, in the order they were settled
+      ShortestPathTree<NodeType, EdgeType> tree = new ShortestPathTree<>(startNode.data);
+      for (int i = 1; i < workspace.settledCount; i++) {
+        Node node = nodesById.get(workspace.settled[i]);
+        Edge edge = edgeTo(workspace, node.id);
+        tree.settle(node.data, edge.predecessor.data, edge.data, workspace.cost[node.id]);
       }
+      return tree;
+    } finally {
+      releaseWorkspace(workspace);
+    }
+  }
 
-      for (Edge edge : currentGraphNode.edgesLeaving) {
-        Node neighbor = edge.successor;
-        double newCost = currentNode.cost + edge.data.doubleValue();
+  /**
+   * Runs Dijkstra's algorithm from startNode, leaving its results in a workspace: the cost of and
+   * the edge into each node reached, and the ids of the settled nodes in the order they were
+   * settled. Each node is queued at most once, and its queued cost is lowered in place whenever a
+   * cheaper path to it is found. The search stops once remaining nodes that satisfy isEnd have been
+   * settled (or, when isEnd is null, once every reachable node has been settled), and never queues
+   * a node at a cost of more than maxCost.
+   *
+   * @param workspace the workspace to search in, which is reset first
+   * @param startNode the node every path starts from
+   * @param isEnd     whether a node is one to stop after, or null to settle every reachable node
+   * @param remaining the number of nodes satisfying isEnd to settle before stopping
+   * @param maxCost   the largest path cost to follow edges up to
+   */
+  protected void search(Workspace workspace, Node startNode, Predicate<Node> isEnd, int remaining,
+      double maxCost) {
+    workspace.reset(nodesById.size());
+    IndexedHeap candidates = workspace.heap;
+    Adjacency adjacency = adjacency();
+    workspace.reach(startNode.id, 0, null);
+    candidates.offer(startNode.id, 0);
 
-        //If  neighbor hasn't been visited yet, add to candidates list
-        if (!visited.contains(neighbor.data)) {
-          candidates.add(new SearchNode(neighbor, newCost, currentNode));
+    while (!candidates.isEmpty() && (isEnd == null || remaining > 0)) {
+      int currentId = candidates.poll();
+      double currentCost = workspace.cost[currentId];
+      workspace.settled[workspace.settledCount++] = currentId;
+      if (isEnd != null && isEnd.test(nodesById.get(currentId))) {
+        remaining--;
+      }
+
+      for (int i = adjacency.leavingStart[currentId]; i < adjacency.leavingStart[currentId + 1];
+          i++) {
+        int neighbor = adjacency.leavingOther[i];
+        double newCost = currentCost + adjacency.leavingWeight[i];
+        if (newCost > maxCost) {
+          continue;
+        }
+        //Queue the neighbor, or lower its queued cost, if this path to it is the cheapest yet
+        if (!workspace.isReached(neighbor)) {
+          workspace.reach(neighbor, newCost, adjacency.leavingEdge[i]);
+          candidates.offer(neighbor, newCost);
+        } else if (candidates.contains(neighbor) && newCost < workspace.cost[neighbor]) {
+          workspace.reach(neighbor, newCost, adjacency.leavingEdge[i]);
+          candidates.offer(neighbor, newCost);
         }
       }
     }
+  }
+
+  // takes the calling thread's workspace, or a new one if that is already in use by a search
+  // further up the calling thread's stack
+  private Workspace acquireWorkspace() {
+    Workspace workspace = workspaces.get();
+    if (workspace.inUse) {
+      workspace = new Workspace();
+    }
+    workspace.inUse = true;
+    return workspace;
+  }
+
+  // returns a workspace taken by acquireWorkspace()
+  private void releaseWorkspace(Workspace workspace) {
+    workspace.clearEdges();
+    workspace.inUse = false;
+  }
+
+  // returns the edge into a node along the cheapest path to it that a search found
+  private Edge edgeTo(Workspace workspace, int id) {
+    return edgeTo(workspace.edges[id]);
+  }
 
-    //NoSuchElementException if path isn't found
-    throw new NoSuchElementException("No path found from start to end.");
+  // returns an edge held as an Object, as in a workspace or the packed adjacency
+  @SuppressWarnings("unchecked")
+  private Edge edgeTo(Object edge) {
+    return (Edge) edge;
   }
 
   /**
@@ -266,4 +927,301 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
       graph.shortestPathData("A", "G");
     });
   }
+
+  /**
+   * Tests that node ids stay dense after nodes are removed, and that searches still find the
+   * shortest paths afterwards
+   */
+  @Test
+  public void test4() {
+    DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertNode("C");
+    graph.insertNode("D");
+    graph.insertEdge("A", "B", 1);
+    graph.insertEdge("B", "D", 1);
+    graph.insertEdge("A", "C", 5);
+    graph.insertEdge("C", "D", 5);
+
+    graph.removeNode("B");
+    assertEquals(3, graph.getNodeCount());
+    for (int id = 0; id < graph.getNodeCount(); id++) {
+      assertEquals(id, graph.getNodeId(graph.getNodeData(id)));
+    }
+    assertEquals(-1, graph.getNodeId("B"));
+    assertEquals(List.of("A", "C", "D"), graph.shortestPathData("A", "D"));
+    assertEquals(10, graph.shortestPathCost("A", "D"));
+    assertThrows(NoSuchElementException.class, () -> graph.getEdge("B", "D"));
+  }
+
+  /**
+   * Tests that a single-source tree settles every reachable node, with the cost and number of
+   * hops of each one's shortest path
+   */
+  @Test
+  public void test5() {
+    DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+    for (String node : List.of("A", "B", "C", "D", "E", "F", "G", "H")) {
+      graph.insertNode(node);
+    }
+    graph.insertEdge("A", "E", 15);
+    graph.insertEdge("A", "B", 4);
+    graph.insertEdge("A", "C", 2);
+    graph.insertEdge("B", "E", 10);
+    graph.insertEdge("B", "D", 1);
+    graph.insertEdge("C", "D", 5);
+    graph.insertEdge("D", "E", 3);
+    graph.insertEdge("D", "F", 0);
+    graph.insertEdge("F", "D", 2);
+    graph.insertEdge("F", "H", 4);
+    graph.insertEdge("G", "H", 4);
+
+    ShortestPathTree<String, Integer> tree = graph.shortestPathTree("A");
+    assertEquals(7, tree.size());
+    assertFalse(tree.contains("G"));
+    assertEquals(0, tree.hopsTo("A"));
+    assertEquals(4, tree.hopsTo("H"));
+    assertEquals(9, tree.costTo("H"));
+    assertEquals(List.of("A", "B", "D", "F", "H"), tree.pathTo("H"));
+    assertEquals(List.of(4, 1, 0, 4), tree.edgesTo("H"));
+  }
+
+  /**
+   * Tests that loading a graph from a GraphBuilder gives the same nodes, edges, and weights as
+   * inserting them one at a time, including the last weight of a repeated edge, and that the loaded
+   * graph can still be modified afterwards.
+   */
+  @Test
+  public void test6() {
+    String[][] edges = {{"A", "B"}, {"B", "C"}, {"A", "C"}, {"C", "A"}, {"A", "B"}, {"D", "B"}};
+    int[] weights = {4, 2, 9, 1, 3, 5};
+    DijkstraGraph<String, Integer> inserted = new DijkstraGraph<>();
+    GraphBuilder<String, Integer> builder = new GraphBuilder<>();
+    for (int i = 0; i < edges.length; i++) {
+      inserted.insertNode(edges[i][0]);
+      inserted.insertNode(edges[i][1]);
+      inserted.insertEdge(edges[i][0], edges[i][1], weights[i]);
+      builder.addEdge(edges[i][0], edges[i][1], weights[i]);
+    }
+    DijkstraGraph<String, Integer> built = new DijkstraGraph<>();
+    built.insertNode("Z"); // replaced by the builder's nodes
+    builder.build(built);
+
+    assertEquals(inserted.getAllNodes(), built.getAllNodes());
+    assertEquals(5, built.getEdgeCount());
+    assertFalse(built.containsNode("Z"));
+    for (String[] edge : edges)
+      assertEquals(inserted.getEdge(edge[0], edge[1]), built.getEdge(edge[0], edge[1]));
+    assertEquals(3, built.getEdge("A", "B"));
+    assertEquals(inserted.shortestPathData("D", "A"), built.shortestPathData("D", "A"));
+
+    assertTrue(built.removeNode("B"));
+    assertFalse(built.containsEdge("A", "B"));
+    assertTrue(built.containsEdge("A", "C"));
+    assertTrue(built.insertEdge("C", "D", 7));
+    assertEquals(List.of("A", "C", "D"), built.shortestPathData("A", "D"));
+
+    builder.reset();
+    assertEquals(0, builder.getNodeCount());
+    builder.build(built);
+    assertEquals(0, built.getNodeCount());
+    assertEquals(0, built.getEdgeCount());
+  }
+
+  /**
+   * Tests that searches that lower the queued cost of nodes many times, that reuse one thread's
+   * workspace across graphs of different sizes, and that run inside another search, all find the
+   * same costs as repeatedly relaxing every edge (Bellman-Ford) does.
+   */
+  @Test
+  public void test7() {
+    Random random = new Random(400);
+    for (int round = 0; round < 20; round++) {
+      int nodeCount = 1 + random.nextInt(round % 2 == 0 ? 60 : 8);
+      DijkstraGraph<Integer, Integer> graph = new DijkstraGraph<>();
+      for (int i = 0; i < nodeCount; i++)
+        graph.insertNode(i);
+      for (int i = 0; i < nodeCount * 4; i++)
+        graph.insertEdge(random.nextInt(nodeCount), random.nextInt(nodeCount), random.nextInt(20));
+
+      double[] expected = new double[nodeCount];
+      Arrays.fill(expected, Double.POSITIVE_INFINITY);
+      expected[0] = 0;
+      for (int pass = 0; pass < nodeCount; pass++) {
+        for (int from = 0; from < nodeCount; from++) {
+          for (int to = 0; to < nodeCount; to++) {
+            if (graph.containsEdge(from, to))
+              expected[to] = Math.min(expected[to], expected[from] + graph.getEdge(from, to));
+          }
+        }
+      }
+
+      ShortestPathTree<Integer, Integer> tree = graph.shortestPathTree(0);
+      for (int node = 0; node < nodeCount; node++) {
+        assertEquals(expected[node] < Double.POSITIVE_INFINITY, tree.contains(node));
+        if (tree.contains(node)) {
+          assertEquals(expected[node], tree.costTo(node));
+          assertEquals(expected[node], graph.shortestPathCost(0, node));
+        }
+      }
+
+      // a search run from inside another search's predicate gets a workspace of its own
+      int last = nodeCount - 1;
+      ShortestPathTree<Integer, Integer> nested = graph.nearestTree(0, node -> {
+        return graph.shortestPathTree(node).contains(last);
+      }, nodeCount);
+      for (int node : nested.getNodes())
+        assertEquals(expected[node], nested.costTo(node));
+    }
+  }
+
+  /**
+   * Tests that searching from both ends at once finds the same paths and costs as searching
+   * forward, while settling fewer nodes on a long path across a grid.
+   */
+  @Test
+  public void test8() {
+    Random random = new Random(23);
+    DijkstraGraph<Integer, Double> forward = new DijkstraGraph<>();
+    DijkstraGraph<Integer, Double> both = new DijkstraGraph<>();
+    both.setBidirectional(true);
+    int nodeCount = 80;
+    for (int i = 0; i < nodeCount; i++) {
+      forward.insertNode(i);
+      both.insertNode(i);
+    }
+    for (int i = 0; i < nodeCount * 3; i++) {
+      int from = random.nextInt(nodeCount);
+      int to = random.nextInt(nodeCount);
+      double weight = random.nextDouble() * 100; // so that no two paths tie
+      forward.insertEdge(from, to, weight);
+      both.insertEdge(from, to, weight);
+    }
+    for (int start = 0; start < nodeCount; start += 3) {
+      for (int end = 0; end < nodeCount; end++) {
+        boolean connected = forward.shortestPathTree(start).contains(end);
+        if (!connected) {
+          int from = start;
+          int to = end;
+          assertThrows(NoSuchElementException.class, () -> both.shortestPathData(from, to));
+          assertFalse(both.shortestPathTree(start, List.of(end)).contains(end));
+          continue;
+        }
+        assertEquals(forward.shortestPathData(start, end), both.shortestPathData(start, end));
+        assertEquals(forward.shortestPathCost(start, end), both.shortestPathCost(start, end));
+        assertEquals(forward.shortestPathTree(start, List.of(end)).pathTo(end),
+            both.shortestPathTree(start, List.of(end)).pathTo(end));
+      }
+    }
+
+    // across the middle of a 60 by 60 grid, where a search from one end settles a diamond around
+    // its start that reaches the end, and a search from both ends settles two diamonds half as wide
+    DijkstraGraph<Integer, Double> grid = new DijkstraGraph<>();
+    for (int i = 0; i < 3600; i++)
+      grid.insertNode(i);
+    for (int row = 0; row < 60; row++) {
+      for (int column = 0; column < 60; column++) {
+        int node = row * 60 + column;
+        if (column < 59) {
+          grid.insertEdge(node, node + 1, 1 + random.nextDouble() / 10);
+          grid.insertEdge(node + 1, node, 1 + random.nextDouble() / 10);
+        }
+        if (row < 59) {
+          grid.insertEdge(node, node + 60, 1 + random.nextDouble() / 10);
+          grid.insertEdge(node + 60, node, 1 + random.nextDouble() / 10);
+        }
+      }
+    }
+    int from = 30 * 60 + 15;
+    int to = 30 * 60 + 45;
+    List<Integer> path = grid.shortestPathData(from, to);
+    int forwardSettled = workspaces.get().settledCount;
+    grid.setBidirectional(true);
+    assertEquals(path, grid.shortestPathData(from, to));
+    Workspace workspace = workspaces.get();
+    assertTrue(workspace.settledCount + workspace.partner.settledCount < forwardSettled * 3 / 4);
+    assertEquals(List.of(5), grid.shortestPathData(5, 5));
+  }
+
+  /**
+   * Tests that an A* search guided by landmarks finds the same paths and costs as a forward search,
+   * settles far fewer nodes on a long path, and stops being used once the graph changes.
+   */
+  @Test
+  public void test9() {
+    Random random = new Random(24);
+    DijkstraGraph<Integer, Double> forward = new DijkstraGraph<>();
+    DijkstraGraph<Integer, Double> guided = new DijkstraGraph<>();
+    int nodeCount = 80;
+    for (int i = 0; i < nodeCount; i++) {
+      forward.insertNode(i);
+      guided.insertNode(i);
+    }
+    for (int i = 0; i < nodeCount * 3; i++) {
+      int from = random.nextInt(nodeCount);
+      int to = random.nextInt(nodeCount);
+      double weight = random.nextDouble() * 100; // so that no two paths tie
+      forward.insertEdge(from, to, weight);
+      guided.insertEdge(from, to, weight);
+    }
+    assertEquals(4, guided.computeLandmarks(4));
+    assertEquals(4, guided.getLandmarkCount());
+    for (int start = 0; start < nodeCount; start += 3) {
+      for (int end = 0; end < nodeCount; end++) {
+        if (!forward.shortestPathTree(start).contains(end)) {
+          int from = start;
+          int to = end;
+          assertThrows(NoSuchElementException.class, () -> guided.shortestPathData(from, to));
+          continue;
+        }
+        assertEquals(forward.shortestPathData(start, end), guided.shortestPathData(start, end));
+        assertEquals(forward.shortestPathCost(start, end), guided.shortestPathCost(start, end));
+        assertEquals(forward.shortestPathTree(start, List.of(end)).pathTo(end),
+            guided.shortestPathTree(start, List.of(end)).pathTo(end));
+      }
+    }
+
+    // changing the graph leaves the landmarks out of date, so they are no longer used
+    guided.insertEdge(0, 79, 0.5);
+    assertEquals(0, guided.getLandmarkCount());
+    assertEquals(List.of(0, 79), guided.shortestPathData(0, 79));
+    assertEquals(3, guided.computeLandmarks(3));
+    assertEquals(List.of(0, 79), guided.shortestPathData(0, 79));
+    assertEquals(0, guided.computeLandmarks(0));
+    DijkstraGraph<Integer, Double> pair = new DijkstraGraph<>();
+    pair.insertNode(1);
+    pair.insertNode(2);
+    pair.insertEdge(1, 2, 1.0);
+    assertEquals(2, pair.computeLandmarks(5)); // at most one landmark per node
+    assertEquals(List.of(1, 2), pair.shortestPathData(1, 2));
+    assertThrows(NoSuchElementException.class, () -> pair.shortestPathData(2, 1));
+
+    // across the middle of a 60 by 60 grid
+    DijkstraGraph<Integer, Double> grid = new DijkstraGraph<>();
+    for (int i = 0; i < 3600; i++)
+      grid.insertNode(i);
+    for (int row = 0; row < 60; row++) {
+      for (int column = 0; column < 60; column++) {
+        int node = row * 60 + column;
+        if (column < 59) {
+          grid.insertEdge(node, node + 1, 1 + random.nextDouble() / 10);
+          grid.insertEdge(node + 1, node, 1 + random.nextDouble() / 10);
+        }
+        if (row < 59) {
+          grid.insertEdge(node, node + 60, 1 + random.nextDouble() / 10);
+          grid.insertEdge(node + 60, node, 1 + random.nextDouble() / 10);
+        }
+      }
+    }
+    int from = 30 * 60 + 15;
+    int to = 30 * 60 + 45;
+    List<Integer> path = grid.shortestPathData(from, to);
+    double cost = grid.shortestPathCost(from, to);
+    int forwardSettled = workspaces.get().settledCount;
+    grid.computeLandmarks(8);
+    assertEquals(path, grid.shortestPathData(from, to));
+    assertEquals(cost, grid.shortestPathCost(from, to));
+    assertTrue(workspaces.get().settledCount < forwardSettled / 4);
+  }
 }
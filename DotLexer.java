@@ -0,0 +1,624 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A streaming, single pass reader for the edges of a graph written in the DOT language. Bytes are
+ * read from a FileChannel into one reused buffer, and tokens are scanned straight out of that
+ * buffer, so neither the whole file nor any of its lines are ever held as strings. Each distinct
+ * location name is decoded into a String only once: later occurrences of the same name are found
+ * in a table keyed by their raw bytes, and share that first String.
+ *
+ * This reader understands the parts of DOT that appear in exported graphs: quoted ids with escaped
+ * quotes and line continuations, concatenated quoted ids ("a" + "b"), bare and numeral ids, html
+ * ids, comments, edge chains (A -> B -> C), ports (A:n), and any number of attribute lists with any
+ * attributes in them. Each edge that has the weight attribute is reported in the order it appears.
+ * Edges without that attribute, node statements, and graph, node, and edge defaults are skipped.
+ * Undirected edges (A -- B) are reported once in each direction.
+ *
+ * Only a range of a file can be read, as long as that range starts and ends between statements,
+ * which allows large files to be read in chunks. parseParallel() splits a file into chunks at line
+ * boundaries and reads them all at once on the common fork-join pool, which is only correct for
+ * files that (like exported graphs) never continue a statement, quoted id, or comment from one line
+ * onto the next.
+ */
+public class DotLexer {
+
+  /**
+   * Receives each edge that is read, in the order it appears.
+   */
+  public interface EdgeSink {
+    void edge(String source, String target, double weight);
+  }
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  // the kinds of tokens
+  private static final int EOF = 0;
+  private static final int ID = 1;
+  private static final int DIRECTED = 2; // ->
+  private static final int UNDIRECTED = 3; // --
+  private static final int OPEN_BRACKET = 4;
+  private static final int CLOSE_BRACKET = 5;
+  private static final int EQUALS = 6;
+  private static final int COLON = 7;
+  private static final int OTHER = 8; // { } ; , which only separate statements here
+
+  // exact powers of ten, used to parse short decimal numbers without building strings
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+      1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  private final FileChannel channel;
+  private final long end;
+  private final byte[] weightAttribute;
+  private long position; // position in the channel of the next bytes to fill the buffer with
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private final ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+  private int next = 0; // index in buffer of the next byte to read
+  private int limit = 0; // number of bytes in buffer
+  private int line = 1;
+
+  // the bytes of the most recent id token, with quotes and escapes removed
+  private byte[] token = new byte[64];
+  private int tokenLength;
+  private boolean tokenQuoted;
+
+  // names decoded so far, in an open addressing table keyed by their bytes
+  private String[] names = new String[256];
+  private byte[][] nameBytes = new byte[256][];
+  private int[] nameHashes = new int[256];
+  private int nameCount = 0;
+
+  /**
+   * Creates a reader for the bytes of a channel from start up to (but not including) end.
+   *
+   * @param channel         the channel to read from, which is not closed by this reader
+   * @param start           the position of the first byte to read
+   * @param end             the position just past the last byte to read
+   * @param weightAttribute the name of the attribute that holds each edge's weight
+   */
+  public DotLexer(FileChannel channel, long start, long end, String weightAttribute) {
+    this.channel = channel;
+    this.position = start;
+    this.end = end;
+    this.weightAttribute = weightAttribute.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads every weighted edge in a DOT file.
+   *
+   * @param filename        the path of the file to read
+   * @param weightAttribute the name of the attribute that holds each edge's weight
+   * @param sink            receives each edge that is read
+   * @throws IOException if the file cannot be read, or is not valid DOT
+   */
+  public static void parse(String filename, String weightAttribute, EdgeSink sink)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      new DotLexer(channel, 0, channel.size(), weightAttribute).parse(sink);
+    }
+  }
+
+  /**
+   * Reads every weighted edge in a DOT file, by splitting it into chunks at line boundaries and
+   * reading those chunks in parallel on the common fork-join pool. Each chunk's edges are collected
+   * in a buffer of their own, and then passed to sink on the calling thread in the same order that
+   * parse() would pass them, so repeated edges are resolved exactly as they would be when reading
+   * the file in one pass. Each chunk is passed along as soon as it and all earlier chunks are read.
+   *
+   * This requires that no statement, quoted id, or comment continues from one line onto the next.
+   *
+   * @param filename        the path of the file to read
+   * @param weightAttribute the name of the attribute that holds each edge's weight
+   * @param chunks          the number of chunks to split the file into
+   * @param sink            receives each edge that is read
+   * @throws IOException if the file cannot be read, or is not valid DOT
+   */
+  public static void parseParallel(String filename, String weightAttribute, int chunks,
+      EdgeSink sink) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      long[] bounds = splitAtLines(channel, chunks);
+      List<ForkJoinTask<EdgeBuffer>> reads = new ArrayList<>();
+      for (int i = 0; i + 1 < bounds.length; i++) {
+        DotLexer lexer = new DotLexer(channel, bounds[i], bounds[i + 1], weightAttribute);
+        reads.add(ForkJoinPool.commonPool().submit(() -> {
+          EdgeBuffer edges = new EdgeBuffer();
+          lexer.parse(edges);
+          return edges;
+        }));
+      }
+      try {
+        for (ForkJoinTask<EdgeBuffer> read : reads)
+          read.join().replay(sink);
+      } catch (RuntimeException e) {
+        // an IOException thrown while reading a chunk is rethrown wrapped by join()
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+          if (cause instanceof IOException)
+            throw new IOException(cause.getMessage(), cause);
+        }
+        throw e;
+      } finally {
+        reads.forEach(read -> read.cancel(false));
+      }
+    }
+  }
+
+  // returns chunks + 1 (or fewer) increasing positions that split a channel just after newlines
+  private static long[] splitAtLines(FileChannel channel, int chunks) throws IOException {
+    long size = channel.size();
+    long[] bounds = new long[Math.max(1, chunks) + 1];
+    int count = 1;
+    ByteBuffer probe = ByteBuffer.allocate(4096);
+    for (int i = 1; i < chunks; i++) {
+      long position = Math.max(bounds[count - 1], size * i / chunks);
+      // move forward to just after the next newline
+      boolean found = false;
+      while (!found && position < size) {
+        probe.clear();
+        int read = channel.read(probe, position);
+        if (read < 0)
+          break;
+        for (int j = 0; j < read && !found; j++) {
+          position++;
+          found = probe.get(j) == '\n';
+        }
+      }
+      if (position < size && position > bounds[count - 1])
+        bounds[count++] = position;
+    }
+    bounds[count++] = size;
+    return Arrays.copyOf(bounds, count);
+  }
+
+  // the edges read from one chunk, in order
+  private static class EdgeBuffer implements EdgeSink {
+    private String[] sources = new String[1024];
+    private String[] targets = new String[1024];
+    private double[] weights = new double[1024];
+    private int size = 0;
+
+    @Override
+    public void edge(String source, String target, double weight) {
+      if (size == weights.length) {
+        sources = Arrays.copyOf(sources, size * 2);
+        targets = Arrays.copyOf(targets, size * 2);
+        weights = Arrays.copyOf(weights, size * 2);
+      }
+      sources[size] = source;
+      targets[size] = target;
+      weights[size++] = weight;
+    }
+
+    // passes every buffered edge to sink, in order
+    void replay(EdgeSink sink) {
+      for (int i = 0; i < size; i++)
+        sink.edge(sources[i], targets[i], weights[i]);
+    }
+  }
+
+  /**
+   * Reads every weighted edge in this reader's range.
+   *
+   * @param sink receives each edge that is read
+   * @throws IOException if the channel cannot be read, or its bytes are not valid DOT
+   */
+  public void parse(EdgeSink sink) throws IOException {
+    skipByteOrderMark();
+    ArrayList<String> chain = new ArrayList<>();
+    int kind = nextToken();
+    while (kind != EOF) {
+      if (kind != ID) {
+        kind = nextToken();
+        continue;
+      }
+      if (!tokenQuoted && (tokenIs("strict") || tokenIs("digraph") || tokenIs("subgraph"))) {
+        kind = nextToken(); // the graph's name, if it has one, is skipped as a lone id below
+        continue;
+      }
+      if (!tokenQuoted && (tokenIs("graph") || tokenIs("node") || tokenIs("edge"))) {
+        // defaults for the graph, nodes, or edges: graph [a=b] or node [a=b]
+        kind = nextToken();
+        while (kind == OPEN_BRACKET)
+          kind = skipAttributes();
+        continue;
+      }
+
+      // a node, an edge chain, or a graph attribute (a = b)
+      chain.clear();
+      chain.add(name());
+      kind = skipPort(nextToken());
+      if (kind == EQUALS) {
+        if (nextToken() != ID)
+          throw error("Expected a value after =");
+        kind = nextToken();
+        continue;
+      }
+      boolean undirected = false;
+      while (kind == DIRECTED || kind == UNDIRECTED) {
+        undirected |= kind == UNDIRECTED;
+        if (nextToken() != ID)
+          throw error("Expected a location after an edge operator");
+        chain.add(name());
+        kind = skipPort(nextToken());
+      }
+      double weight = Double.NaN;
+      while (kind == OPEN_BRACKET) {
+        double value = readWeight();
+        if (!Double.isNaN(value))
+          weight = value;
+        kind = nextToken();
+      }
+      if (chain.size() > 1 && !Double.isNaN(weight)) {
+        for (int i = 1; i < chain.size(); i++) {
+          sink.edge(chain.get(i - 1), chain.get(i), weight);
+          if (undirected)
+            sink.edge(chain.get(i), chain.get(i - 1), weight);
+        }
+      }
+    }
+  }
+
+  // skips an optional port after an id (A:port or A:port:compass), returning the next token
+  private int skipPort(int kind) throws IOException {
+    while (kind == COLON) {
+      if (nextToken() != ID)
+        throw error("Expected a port name after :");
+      kind = nextToken();
+    }
+    return kind;
+  }
+
+  // reads one attribute list after its [, returning the weight it sets, or NaN when it sets none
+  private double readWeight() throws IOException {
+    double weight = Double.NaN;
+    int kind = nextToken();
+    while (kind != CLOSE_BRACKET) {
+      if (kind == EOF)
+        throw error("Expected ] to end an attribute list");
+      if (kind != ID) {
+        kind = nextToken(); // separators between attributes
+        continue;
+      }
+      boolean isWeight = tokenEquals(weightAttribute);
+      kind = nextToken();
+      if (kind == EQUALS) {
+        if (nextToken() != ID)
+          throw error("Expected a value after =");
+        if (isWeight)
+          weight = parseNumber();
+        kind = nextToken();
+      }
+    }
+    return weight;
+  }
+
+  // skips one attribute list after its [, returning the token after its ]
+  private int skipAttributes() throws IOException {
+    int kind;
+    while ((kind = nextToken()) != CLOSE_BRACKET) {
+      if (kind == EOF)
+        throw error("Expected ] to end an attribute list");
+    }
+    return nextToken();
+  }
+
+  // scans the next token, storing the bytes of ids in token
+  private int nextToken() throws IOException {
+    int c = skipSpaceAndComments();
+    switch (c) {
+      case -1:
+        return EOF;
+      case '[':
+        return OPEN_BRACKET;
+      case ']':
+        return CLOSE_BRACKET;
+      case '=':
+        return EQUALS;
+      case ':':
+        return COLON;
+      case '{':
+      case '}':
+      case ';':
+      case ',':
+        return OTHER;
+      case '"':
+        readQuoted();
+        return ID;
+      case '<':
+        readHtml();
+        return ID;
+      case '-':
+        if (peek() == '>') {
+          read();
+          return DIRECTED;
+        }
+        if (peek() == '-') {
+          read();
+          return UNDIRECTED;
+        }
+        break;
+      default:
+        break;
+    }
+    if (c == '.' || (c >= '0' && c <= '9') || (c == '-' && (peek() == '.'
+        || (peek() >= '0' && peek() <= '9')))) {
+      readNumeral(c);
+      return ID;
+    }
+    if (isIdStart(c)) {
+      tokenLength = 0;
+      tokenQuoted = false;
+      append(c);
+      while (isIdStart(peek()) || (peek() >= '0' && peek() <= '9'))
+        append(read());
+      return ID;
+    }
+    throw error("Unexpected character '" + (char) c + "'");
+  }
+
+  // skips whitespace and comments, returning the first byte after them (or -1 at the end)
+  private int skipSpaceAndComments() throws IOException {
+    while (true) {
+      int c = read();
+      if (c == '/' && peek() == '/') {
+        skipLine();
+      } else if (c == '/' && peek() == '*') {
+        read();
+        int previous = 0;
+        while ((c = read()) != -1 && !(previous == '*' && c == '/'))
+          previous = c;
+      } else if (c == '#') {
+        skipLine();
+      } else if (c != ' ' && c != '\t' && c != '\n' && c != '\r' && c != '\f') {
+        return c;
+      }
+    }
+  }
+
+  // skips the rest of the current line
+  private void skipLine() throws IOException {
+    int c;
+    while ((c = peek()) != -1 && c != '\n')
+      read();
+  }
+
+  // reads a quoted id after its opening quote, including any quoted ids concatenated with +
+  private void readQuoted() throws IOException {
+    tokenLength = 0;
+    tokenQuoted = true;
+    while (true) {
+      int c;
+      while ((c = read()) != '"') {
+        if (c == -1)
+          throw error("Expected \" to end a quoted id");
+        if (c == '\\') {
+          int escaped = read();
+          if (escaped == '"') {
+            append('"');
+          } else if (escaped == '\n') {
+            continue; // a line continuation
+          } else if (escaped == '\r' && peek() == '\n') {
+            read();
+          } else {
+            // other escapes, such as \n in labels, are kept as they are written
+            append('\\');
+            if (escaped != -1)
+              append(escaped);
+          }
+        } else {
+          append(c);
+        }
+      }
+      // "a" + "b" is the same id as "ab"
+      int after = skipSpaceAndComments();
+      if (after == '+') {
+        if (skipSpaceAndComments() != '"')
+          throw error("Expected a quoted id after +");
+        continue;
+      }
+      if (after != -1)
+        next--; // only the byte just read needs to be pushed back
+      return;
+    }
+  }
+
+  // reads an html id after its opening <, up to the matching >
+  private void readHtml() throws IOException {
+    tokenLength = 0;
+    tokenQuoted = true;
+    int depth = 1;
+    while (true) {
+      int c = read();
+      if (c == -1)
+        throw error("Expected > to end an html id");
+      if (c == '<')
+        depth++;
+      else if (c == '>' && --depth == 0)
+        return;
+      append(c);
+    }
+  }
+
+  // reads a numeral id, which may have a sign, a decimal point, and an exponent
+  private void readNumeral(int first) throws IOException {
+    tokenLength = 0;
+    tokenQuoted = false;
+    append(first);
+    int c;
+    while (((c = peek()) >= '0' && c <= '9') || c == '.')
+      append(read());
+    if (c == 'e' || c == 'E') {
+      append(read());
+      if (peek() == '+' || peek() == '-')
+        append(read());
+      while ((c = peek()) >= '0' && c <= '9')
+        append(read());
+    }
+  }
+
+  // returns the String for the current id token, decoding it only the first time it is seen
+  private String name() {
+    int hash = 1;
+    for (int i = 0; i < tokenLength; i++)
+      hash = 31 * hash + token[i];
+    int mask = names.length - 1;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    while (names[slot] != null) {
+      if (nameHashes[slot] == hash && tokenEquals(nameBytes[slot]))
+        return names[slot];
+      slot = (slot + 1) & mask;
+    }
+    String name = new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+    names[slot] = name;
+    nameBytes[slot] = Arrays.copyOf(token, tokenLength);
+    nameHashes[slot] = hash;
+    if (++nameCount * 2 > names.length)
+      growNames();
+    return name;
+  }
+
+  // doubles the capacity of the name table
+  private void growNames() {
+    String[] oldNames = names;
+    byte[][] oldBytes = nameBytes;
+    int[] oldHashes = nameHashes;
+    names = new String[oldNames.length * 2];
+    nameBytes = new byte[names.length][];
+    nameHashes = new int[names.length];
+    int mask = names.length - 1;
+    for (int i = 0; i < oldNames.length; i++) {
+      if (oldNames[i] == null)
+        continue;
+      int slot = (oldHashes[i] ^ (oldHashes[i] >>> 16)) & mask;
+      while (names[slot] != null)
+        slot = (slot + 1) & mask;
+      names[slot] = oldNames[i];
+      nameBytes[slot] = oldBytes[i];
+      nameHashes[slot] = oldHashes[i];
+    }
+  }
+
+  // parses the current id token as a number
+  private double parseNumber() throws IOException {
+    // short decimals are exact as a whole number divided by a power of ten, so dividing them gives
+    // the correctly rounded result; anything else is left to Double.parseDouble
+    long digits = 0;
+    int significant = 0;
+    int fractionDigits = -1;
+    int i = 0;
+    boolean negative = tokenLength > 0 && token[0] == '-';
+    if (negative || (tokenLength > 0 && token[0] == '+'))
+      i++;
+    boolean simple = false;
+    for (; i < tokenLength; i++) {
+      int c = token[i];
+      if (c >= '0' && c <= '9') {
+        simple = true;
+        if (digits != 0 || c != '0')
+          significant++;
+        digits = digits * 10 + (c - '0');
+        if (fractionDigits >= 0)
+          fractionDigits++;
+      } else if (c == '.' && fractionDigits < 0) {
+        fractionDigits = 0;
+      } else {
+        simple = false;
+        break;
+      }
+    }
+    if (simple && significant <= 15 && fractionDigits < POWERS_OF_TEN.length) {
+      double value = fractionDigits > 0 ? digits / POWERS_OF_TEN[fractionDigits] : digits;
+      return negative ? -value : value;
+    }
+    try {
+      return Double.parseDouble(new String(token, 0, tokenLength, StandardCharsets.US_ASCII));
+    } catch (NumberFormatException e) {
+      throw error("Invalid number: " + new String(token, 0, tokenLength, StandardCharsets.UTF_8));
+    }
+  }
+
+  // checks whether the current id token is exactly an ascii keyword
+  private boolean tokenIs(String keyword) {
+    if (tokenLength != keyword.length())
+      return false;
+    for (int i = 0; i < tokenLength; i++)
+      if (token[i] != keyword.charAt(i))
+        return false;
+    return true;
+  }
+
+  // checks whether the current id token has exactly the provided bytes
+  private boolean tokenEquals(byte[] bytes) {
+    return Arrays.equals(token, 0, tokenLength, bytes, 0, bytes.length);
+  }
+
+  // adds a byte to the current id token
+  private void append(int c) {
+    if (tokenLength == token.length)
+      token = Arrays.copyOf(token, tokenLength * 2);
+    token[tokenLength++] = (byte) c;
+  }
+
+  // letters, underscores, and any non-ascii byte can start a bare id
+  private static boolean isIdStart(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c >= 0x80;
+  }
+
+  // skips a utf-8 byte order mark at the very start of the file
+  private void skipByteOrderMark() throws IOException {
+    if (position == 0 && peek() == 0xEF) {
+      read();
+      read();
+      read();
+    }
+  }
+
+  // returns the next byte without consuming it, or -1 at the end
+  private int peek() throws IOException {
+    if (next == limit && !fill())
+      return -1;
+    return buffer[next] & 0xFF;
+  }
+
+  // consumes and returns the next byte, or -1 at the end
+  private int read() throws IOException {
+    if (next == limit && !fill())
+      return -1;
+    int c = buffer[next++] & 0xFF;
+    if (c == '\n')
+      line++;
+    return c;
+  }
+
+  // refills the buffer from the channel, returning false when there is nothing left to read
+  private boolean fill() throws IOException {
+    if (position >= end)
+      return false;
+    wrapper.clear();
+    wrapper.limit((int) Math.min(BUFFER_SIZE, end - position));
+    int count;
+    // positional reads leave the channel's own position alone, so several readers can share it
+    while ((count = channel.read(wrapper, position)) == 0) {
+      // keep reading until some bytes arrive
+    }
+    if (count < 0)
+      return false;
+    position += count;
+    next = 0;
+    limit = count;
+    return true;
+  }
+
+  // creates an exception describing a syntax error at the current line
+  private IOException error(String message) {
+    return new IOException("Invalid DOT on line " + line + " of this range: " + message);
+  }
+}
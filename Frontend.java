@@ -13,7 +13,20 @@ public class Frontend implements FrontendInterface{
     * @param backend is used for shortest path computations
     */
     public Frontend(BackendInterface backend) {
+        this(backend, true);
+    }
+
+    /**
+    * Creates a frontend that can be given a backend which has already loaded its graph data,
+    * so that campus.dot is not loaded into it over that data.
+    * @param backend is used for shortest path computations
+    * @param loadCampus whether to load campus.dot into the backend first
+    */
+    public Frontend(BackendInterface backend, boolean loadCampus) {
         this.backend = backend;
+        if (!loadCampus) {
+            return;
+        }
         try {
             backend.loadGraphData("campus.dot");
         }
@@ -59,24 +72,30 @@ public class Frontend implements FrontendInterface{
     */
     @Override
     public String generateShortestPathResponseHTML(String start, String end) {
+        // correct the capitalization or small typos in the locations' names, if they are close to one
+        start = resolve(start);
+        end = resolve(end);
+
         // create the HTML fragment as a string
         String fragment = "";
         fragment += "<p>The path starts at " + start + " and ends at " + end + "</p>\n";
 
-        // get the locations on the shortest path from start to end
-        List<String> locationsOnShortestPath = backend.findLocationsOnShortestPath(start, end);
+        // find the locations and travel times on the shortest path from start to end with one search
+        PathResult result = backend.findShortestPath(start, end);
 
         // check if a path exists for that start and end combination
-        if (locationsOnShortestPath.size() == 0) {
-            List<String> allLocations = backend.getListOfAllLocations();
-            boolean invalidStart = false;
-            // check if the start is in the list of locations
-            if (!allLocations.contains(start)) {
+        if (!result.isFound()) {
+            PathResult.Failure failure = result.getFailure();
+            boolean invalidStart = failure == PathResult.Failure.START_NOT_FOUND
+                || failure == PathResult.Failure.START_AND_END_NOT_FOUND;
+            boolean invalidEnd = failure == PathResult.Failure.END_NOT_FOUND
+                || failure == PathResult.Failure.START_AND_END_NOT_FOUND;
+            // check if the start location was not found
+            if (invalidStart) {
                 fragment += "<p>Error: Invalid start location. That start location does not exist.</p>";
-                invalidStart = true;
             }
-            // check if the end is in the list of locations
-            if (!allLocations.contains(end)) {
+            // check if the end location was not found
+            if (invalidEnd) {
                 // if the start was also invalid, add a newline character so that the error messages are on two different lines
                 if (invalidStart) {
                     fragment += "\n"; // EDIT: instead of adding the whole string, just add the newline character
@@ -84,10 +103,9 @@ public class Frontend implements FrontendInterface{
                 fragment += "<p>Error: Invalid end location. That end location does not exist.</p>";
             }
             // check if the start and end locations exist, but there's no way to travel between them
-            if (allLocations.contains(start) && allLocations.contains(end)) {
+            if (failure == PathResult.Failure.NO_PATH) {
                 fragment += "<p>Error: There is no such path between " + start + " and " + end + ".</p>"; // EDIT: specified the start and end in the error message
             }
-            // fragment += "<p>Error: There is no such path</p>";
             return fragment;
         }
 
@@ -95,22 +113,15 @@ public class Frontend implements FrontendInterface{
         fragment += "<ol>\n";
 
         // loop through all the locations and add them to fragment
-        for (String location : locationsOnShortestPath) {
+        for (String location : result.getLocations()) {
             fragment += "\t<li>" + location + "</li>\n";
         }
 
         // close the ordered list 
         fragment += "</ol>\n";
 
-        // get the times between every two nodes on the shortest path
-        List<Double> travelTimes = backend.findTimesOnShortestPath(start, end);
-        double totalTime = 0.0;
-        // loop through the travel times and add them up
-        for (double time : travelTimes) {
-            totalTime += time;
-        }
         // add the total travel time to the fragment
-        fragment += "<p>The total travel time along this path is " + String.valueOf(totalTime) + " seconds</p>";
+        fragment += "<p>The total travel time along this path is " + String.valueOf(result.getTotalTime()) + " seconds</p>";
 
         return fragment;
     }
@@ -150,6 +161,9 @@ public class Frontend implements FrontendInterface{
     */
     @Override
     public String generateLongestLocationListFromResponseHTML(String start) {
+        // correct the capitalization or small typos in the location's name, if it is close to one
+        start = resolve(start);
+
         // create the HTML fragment as a string
         String fragment = "";
         try {
@@ -202,5 +216,16 @@ public class Frontend implements FrontendInterface{
             return fragment;
         }
     }
- 
+
+    /**
+    * Returns the name of the location that a user most likely meant, or the
+    * name that they entered if it is not close to any single location.
+    * @param location is the location name that the user entered
+    * @return the name to search for
+    */
+    private String resolve(String location) {
+        String resolved = backend.resolveLocation(location);
+        return resolved != null ? resolved : location;
+    }
+
 }
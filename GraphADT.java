@@ -1,5 +1,7 @@
+import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Predicate;
 
 /**
  * This ADT represents a directed graph data structure with only positive edge 
@@ -137,5 +139,99 @@ public interface GraphADT<NodeType, EdgeType extends Number> {
    *         start node to the end node
    */
   public double shortestPathCost(NodeType start, NodeType end);
+
+  /**
+   * Finds the shortest path from the node with the provided start value to
+   * the node with the provided end value, adding the data of each node along
+   * it (from start to end) to nodes, and the data of each edge along it (in
+   * the same order) to edges. Unlike shortestPathTree, only that one path is
+   * kept, so nothing is recorded for the other nodes that the search visits.
+   * Graphs that can should read the path straight from their search, rather
+   * than through a tree as this default does.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end the data item in the destination node for the path
+   * @param nodes the list to add the data of the nodes along the path to
+   * @param edges the list to add the data of the edges along the path to
+   * @return true if the path was found, or false (adding nothing to either
+   *         list) if start or end cannot be found in the graph, or if there
+   *         is no directed path from start to end
+   */
+  public default boolean shortestPath(NodeType start, NodeType end,
+      List<NodeType> nodes, List<EdgeType> edges) {
+    if (!containsNode(start) || !containsNode(end))
+      return false;
+    ShortestPathTree<NodeType, EdgeType> tree =
+        shortestPathTree(start, List.of(end));
+    if (!tree.contains(end))
+      return false;
+    nodes.addAll(tree.pathTo(end));
+    edges.addAll(tree.edgesTo(end));
+    return true;
+  }
+
+  /**
+   * Returns the shortest paths from the node with the provided start value
+   * to every node with one of the provided end values, computed by a single
+   * search from start. The search stops as soon as all of those end nodes
+   * have been settled, so the returned tree may include other nodes as well.
+   * End values that are not found in the graph or that cannot be reached
+   * from start are simply not included in the tree.
+   *
+   * @param start the data item in the starting node for every path
+   * @param ends the data items in the destination nodes for the paths
+   * @return the tree of shortest paths found from start
+   * @throws NoSuchElementException if the start node cannot be found in the
+   *         graph
+   */
+  public ShortestPathTree<NodeType, EdgeType> shortestPathTree(NodeType start,
+      Collection<NodeType> ends);
+
+  /**
+   * Returns the shortest paths from the node with the provided start value
+   * to every node that can be reached from it, computed by a single search
+   * that settles that whole reachable set.
+   *
+   * @param start the data item in the starting node for every path
+   * @return the tree of shortest paths from start to every reachable node
+   * @throws NoSuchElementException if the start node cannot be found in the
+   *         graph
+   */
+  public ShortestPathTree<NodeType, EdgeType> shortestPathTree(NodeType start);
+
+  /**
+   * Returns the shortest paths from the node with the provided start value
+   * to the k nearest other nodes whose data satisfies isTarget, computed by a
+   * single search that stops as soon as k such nodes have been settled (or
+   * when no more nodes can be reached).  The returned tree may include other
+   * nodes as well.  Since its nodes are in order of non-decreasing cost, the
+   * nearest targets are the nodes in it after start that satisfy isTarget,
+   * nearest first.
+   *
+   * @param start the data item in the starting node for every path
+   * @param isTarget whether a node's data makes it one of the targets
+   * @param k the number of targets to stop after
+   * @return the tree of shortest paths found from start
+   * @throws NoSuchElementException if the start node cannot be found in the
+   *         graph
+   */
+  public ShortestPathTree<NodeType, EdgeType> nearestTree(NodeType start,
+      Predicate<NodeType> isTarget, int k);
+
+  /**
+   * Returns the shortest paths from the node with the provided start value
+   * to every node that can be reached from it at a cost of at most maxCost,
+   * computed by a single search that never follows an edge past that cost.
+   * So the work done is proportional to the number of nodes within maxCost
+   * of start (and their edges), rather than to the size of the graph.
+   *
+   * @param start the data item in the starting node for every path
+   * @param maxCost the largest path cost to include
+   * @return the tree of shortest paths from start to every node within
+   *         maxCost of it
+   * @throws NoSuchElementException if the start node cannot be found in the
+   *         graph
+   */
+  public ShortestPathTree<NodeType, EdgeType> boundedTree(NodeType start, double maxCost);
     
 }
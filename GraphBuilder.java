@@ -0,0 +1,189 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Collects the nodes and edges of a graph, and then loads them all into a graph in one step. This
+ * is much faster than inserting them one at a time: inserting an edge into a BaseGraph first
+ * searches the predecessor's list of leaving edges for an existing edge to update, while a builder
+ * finds all of its repeated edges in a single linear pass when it is built.
+ *
+ * Loading a builder into a graph gives exactly the same graph as inserting every node it was given,
+ * and both nodes of every edge it was given followed by that edge, in the order they were given:
+ * nodes are numbered in the order they first appear, each node's edges are listed in the order they
+ * first appear, and a repeated edge keeps the last weight it was given.
+ */
+public class GraphBuilder<NodeType, EdgeType extends Number> {
+  // the id of each node, and the data of each node in id order
+  private HashMap<NodeType, Integer> ids = new HashMap<>();
+  private ArrayList<NodeType> nodes = new ArrayList<>();
+  // the source, target, and weight of each edge in the order they were added, repeats included
+  private int[] sources = new int[1024];
+  private int[] targets = new int[1024];
+  private Object[] weights = new Object[1024];
+  private int edgeCount = 0;
+
+  /**
+   * Adds a node, unless it was already added by itself or as part of an edge.
+   *
+   * @param data the data item stored in the node
+   * @return this builder
+   * @throws NullPointerException if data is null
+   */
+  public GraphBuilder<NodeType, EdgeType> addNode(NodeType data) {
+    idOf(data);
+    return this;
+  }
+
+  /**
+   * Adds a directed edge, along with either of its nodes that were not already added. If an edge
+   * between the same nodes was already added, the graph that is built will have only one edge
+   * between them, with the weight that was added last.
+   *
+   * @param pred   the data item in the edge's predecessor node
+   * @param succ   the data item in the edge's successor node
+   * @param weight the non-negative weight of the edge
+   * @return this builder
+   * @throws NullPointerException if pred, succ, or weight is null
+   */
+  public GraphBuilder<NodeType, EdgeType> addEdge(NodeType pred, NodeType succ, EdgeType weight) {
+    if (weight == null)
+      throw new NullPointerException("Edges must have a weight");
+    int source = idOf(pred);
+    int target = idOf(succ);
+    if (edgeCount == sources.length) {
+      sources = Arrays.copyOf(sources, edgeCount * 2);
+      targets = Arrays.copyOf(targets, edgeCount * 2);
+      weights = Arrays.copyOf(weights, edgeCount * 2);
+    }
+    sources[edgeCount] = source;
+    targets[edgeCount] = target;
+    weights[edgeCount++] = weight;
+    return this;
+  }
+
+  /**
+   * @return the number of distinct nodes added so far
+   */
+  public int getNodeCount() {
+    return nodes.size();
+  }
+
+  /**
+   * Removes every node and edge from this builder, without visiting any of them.
+   */
+  public void reset() {
+    ids = new HashMap<>();
+    nodes = new ArrayList<>();
+    edgeCount = 0;
+    // the weights are left to be overwritten, which keeps this constant time, so only drop them
+    // all if there are enough that holding on to them could matter
+    if (weights.length > 1 << 16)
+      weights = new Object[1024];
+  }
+
+  /**
+   * Replaces every node and edge in a graph with the nodes and edges in this builder. A BaseGraph
+   * is cleared and loaded all at once, while any other graph has its nodes removed and then this
+   * builder's nodes and edges inserted one at a time.
+   *
+   * @param graph the graph to load this builder's nodes and edges into
+   * @throws UnsupportedOperationException if the graph cannot be modified
+   */
+  @SuppressWarnings("unchecked")
+  public void build(GraphADT<NodeType, EdgeType> graph) {
+    if (graph instanceof BaseGraph) {
+      ((BaseGraph<NodeType, EdgeType>) graph).load(this);
+      return;
+    }
+    for (NodeType data : graph.getAllNodes())
+      graph.removeNode(data);
+    for (NodeType data : nodes)
+      graph.insertNode(data);
+    for (int i = 0; i < edgeCount; i++)
+      graph.insertEdge(nodes.get(sources[i]), nodes.get(targets[i]), (EdgeType) weights[i]);
+  }
+
+  /**
+   * Removes the repeated edges from this builder's edges, keeping the first position and the last
+   * weight of each one. Repeats are found by grouping the edges by their source with a counting
+   * sort, and then marking the targets already seen within each group, so this takes time linear
+   * in the number of nodes and edges.
+   *
+   * @return the indexes of the edges to keep, in the order they were first added
+   */
+  int[] distinctEdges() {
+    int nodeCount = nodes.size();
+    // group the edges by source, keeping the order they were added within each group
+    int[] offsets = new int[nodeCount + 1];
+    for (int i = 0; i < edgeCount; i++)
+      offsets[sources[i] + 1]++;
+    for (int i = 0; i < nodeCount; i++)
+      offsets[i + 1] += offsets[i];
+    int[] grouped = new int[edgeCount];
+    int[] fill = Arrays.copyOf(offsets, nodeCount);
+    for (int i = 0; i < edgeCount; i++)
+      grouped[fill[sources[i]]++] = i;
+
+    // within each group, a target seen before marks a repeat of an earlier edge
+    boolean[] keep = new boolean[edgeCount];
+    int[] seenFrom = new int[nodeCount]; // the source + 1 that each target was last seen from
+    int[] firstEdge = new int[nodeCount]; // the first edge to that target from that source
+    int kept = 0;
+    for (int source = 0; source < nodeCount; source++) {
+      for (int i = offsets[source]; i < offsets[source + 1]; i++) {
+        int edge = grouped[i];
+        int target = targets[edge];
+        if (seenFrom[target] == source + 1) {
+          weights[firstEdge[target]] = weights[edge]; // the last weight wins
+        } else {
+          seenFrom[target] = source + 1;
+          firstEdge[target] = edge;
+          keep[edge] = true;
+          kept++;
+        }
+      }
+    }
+    int[] distinct = new int[kept];
+    for (int i = 0, next = 0; i < edgeCount; i++) {
+      if (keep[i])
+        distinct[next++] = i;
+    }
+    return distinct;
+  }
+
+  // returns the data of every node, in id order
+  List<NodeType> nodes() {
+    return nodes;
+  }
+
+  // returns the id of the source node of an edge
+  int source(int edge) {
+    return sources[edge];
+  }
+
+  // returns the id of the target node of an edge
+  int target(int edge) {
+    return targets[edge];
+  }
+
+  // returns the weight of an edge
+  @SuppressWarnings("unchecked")
+  EdgeType weight(int edge) {
+    return (EdgeType) weights[edge];
+  }
+
+  // returns the id of a node, adding it first if it is new
+  private int idOf(NodeType data) {
+    if (data == null)
+      throw new NullPointerException("Nodes must have data");
+    Integer id = ids.get(data);
+    if (id == null) {
+      id = nodes.size();
+      ids.put(data, id);
+      nodes.add(data);
+    }
+    return id;
+  }
+}
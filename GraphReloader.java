@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a graph data file for changes, and runs a reload action on a background thread each time
+ * that file is created or modified. Editors and export tools often write a file in several steps,
+ * so events are collected until the file has been quiet for a short delay, and only then is the
+ * reload action run once for all of them.
+ */
+public class GraphReloader {
+
+  /**
+   * The action to run after the watched file changes.
+   */
+  public interface ReloadAction {
+    void reload() throws Exception;
+  }
+
+  // how long the file must go without changes before it is reloaded
+  private static final long QUIET_MILLIS = 500;
+
+  private final Path file;
+  private final ReloadAction action;
+  private final WatchService watcher;
+  private final Thread watchThread;
+
+  /**
+   * Starts watching a file.
+   *
+   * @param filename the path of the file to watch
+   * @param action   the action to run after that file changes
+   * @throws IOException if the file's directory cannot be watched
+   */
+  public GraphReloader(String filename, ReloadAction action) throws IOException {
+    this.file = Path.of(filename).toAbsolutePath().normalize();
+    this.action = action;
+    this.watcher = FileSystems.getDefault().newWatchService();
+    // a WatchService can only watch directories, so watch the one containing this file
+    file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    watchThread = new Thread(this::watch, "graph-reloader");
+    watchThread.setDaemon(true);
+    watchThread.start();
+  }
+
+  /**
+   * Stops watching the file.
+   */
+  public void close() {
+    watchThread.interrupt();
+    try {
+      watcher.close();
+    } catch (IOException e) {
+      System.err.println("Unable to close file watcher: " + e);
+    }
+  }
+
+  // runs on the background thread: waits for changes to the file, then reloads it
+  private void watch() {
+    try {
+      while (true) {
+        if (!changed(watcher.take()))
+          continue;
+        // keep collecting events until the file stops changing
+        WatchKey key;
+        while ((key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          changed(key);
+        }
+        try {
+          action.reload();
+        } catch (Exception e) {
+          System.err.println("Unable to reload " + file + ": " + e);
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // close() was called, so stop watching
+    }
+  }
+
+  // consumes the events of a watch key, returning true if any of them were for the watched file
+  private boolean changed(WatchKey key) {
+    boolean changed = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW
+          || file.getFileName().equals(event.context()))
+        changed = true;
+    }
+    key.reset();
+    return changed;
+  }
+}
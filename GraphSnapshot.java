@@ -0,0 +1,203 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compiles a DOT file into a compact binary snapshot of its graph, which MappedGraph can open by
+ * memory mapping it rather than parsing it and building a graph on the heap. All numbers in a
+ * snapshot are little endian, and it is laid out as:
+ *
+ *     header        magic "CGSN", format version, node count N, edge count E (4 ints), and
+ *                   the length in bytes of the name bytes section (1 long), 24 bytes in all
+ *     weights       E doubles: the weight of each edge, grouped by source node
+ *     edgeOffsets   N + 1 ints: the edges leaving node i are [edgeOffsets[i], edgeOffsets[i+1])
+ *     targets       E ints: the target node of each edge
+ *     nameOffsets   N + 1 ints: the utf-8 name of node i is [nameOffsets[i], nameOffsets[i+1])
+ *                   within the name bytes
+ *     sortedIds     N ints: the node ids in order of their names' bytes, for binary searches
+ *     name bytes    the utf-8 bytes of every name, one after another
+ *
+ * This is the compressed sparse row (CSR) layout: a node's leaving edges are found with two
+ * offsets, and all edge data is stored in flat arrays. Nodes are numbered in the order they first
+ * appear in the DOT file, and each node's edges keep the order they first appear in, with the last
+ * weight given to any repeated edge (the same result as loading that file into a DijkstraGraph).
+ *
+ * Run as a program to compile a file: java GraphSnapshot campus.dot campus.graph
+ */
+public class GraphSnapshot {
+  static final int MAGIC = 0x4E534743; // "CGSN" read as a little endian int
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 24;
+
+  /**
+   * Compiles a DOT file into a snapshot file. The snapshot is written next to its final location
+   * and then moved into place, so a snapshot that is being watched or opened is never seen half
+   * written.
+   *
+   * @param dotFile      the path of the DOT file to read, whose edges are weighted in seconds
+   * @param snapshotFile the path of the snapshot file to write
+   * @throws IOException if either file cannot be accessed, the DOT file is not valid, or the
+   *                     graph is too large for one snapshot
+   */
+  public static void compile(String dotFile, String snapshotFile) throws IOException {
+    // number the nodes and edges in the order they first appear
+    HashMap<String, Integer> ids = new HashMap<>();
+    List<String> names = new ArrayList<>();
+    HashMap<Long, Integer> edgeIndexes = new HashMap<>();
+    int[][] edgeSources = {new int[1024]};
+    int[][] edgeTargets = {new int[1024]};
+    double[][] edgeWeights = {new double[1024]};
+    DotLexer.parse(dotFile, "seconds", (source, target, weight) -> {
+      int from = ids.computeIfAbsent(source, name -> addName(names, name));
+      int to = ids.computeIfAbsent(target, name -> addName(names, name));
+      int count = edgeIndexes.size();
+      Integer existing = edgeIndexes.putIfAbsent(((long) from << 32) | to, count);
+      if (existing != null) {
+        edgeWeights[0][existing] = weight; // the last weight of a repeated edge wins
+        return;
+      }
+      if (count == edgeSources[0].length) {
+        edgeSources[0] = Arrays.copyOf(edgeSources[0], count * 2);
+        edgeTargets[0] = Arrays.copyOf(edgeTargets[0], count * 2);
+        edgeWeights[0] = Arrays.copyOf(edgeWeights[0], count * 2);
+      }
+      edgeSources[0][count] = from;
+      edgeTargets[0][count] = to;
+      edgeWeights[0][count] = weight;
+    });
+    write(snapshotFile, names, edgeIndexes.size(), edgeSources[0], edgeTargets[0],
+        edgeWeights[0]);
+  }
+
+  /**
+   * Checks whether a file starts like a snapshot, rather than a DOT file.
+   *
+   * @param filename the path of the file to check
+   * @return true if the file starts with the snapshot magic number
+   * @throws IOException if the file cannot be read
+   */
+  public static boolean isSnapshot(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+      while (magic.hasRemaining() && channel.read(magic) >= 0) {
+        // keep reading until all four bytes arrive
+      }
+      return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+    }
+  }
+
+  /**
+   * Compiles the DOT file named by the first argument into the snapshot file named by the second.
+   *
+   * @param args the DOT file and the snapshot file
+   * @throws IOException if the snapshot cannot be compiled
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: java GraphSnapshot GRAPH.dot GRAPH.graph");
+      System.exit(2);
+    }
+    long start = System.nanoTime();
+    compile(args[0], args[1]);
+    System.out.printf("Compiled %s into %s in %.1f ms%n", args[0], args[1],
+        (System.nanoTime() - start) / 1e6);
+  }
+
+  // adds a name to the end of the list of names, returning its id
+  private static int addName(List<String> names, String name) {
+    names.add(name);
+    return names.size() - 1;
+  }
+
+  // writes the sections of a snapshot, grouping the edges by their source node
+  private static void write(String snapshotFile, List<String> names, int edgeCount,
+      int[] sources, int[] targets, double[] weights) throws IOException {
+    int nodeCount = names.size();
+    byte[][] nameBytes = new byte[nodeCount][];
+    long nameLength = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      nameBytes[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+      nameLength += nameBytes[i].length;
+    }
+    long size = HEADER_BYTES + 8L * edgeCount + 4L * (nodeCount + 1) + 4L * edgeCount
+        + 4L * (nodeCount + 1) + 4L * nodeCount + nameLength;
+    if (size > Integer.MAX_VALUE)
+      throw new IOException("The graph in " + snapshotFile + " is too large for one snapshot");
+
+    // a counting sort by source keeps each node's edges in the order they first appeared
+    int[] edgeOffsets = new int[nodeCount + 1];
+    for (int i = 0; i < edgeCount; i++)
+      edgeOffsets[sources[i] + 1]++;
+    for (int i = 0; i < nodeCount; i++)
+      edgeOffsets[i + 1] += edgeOffsets[i];
+    int[] order = new int[edgeCount];
+    int[] fill = Arrays.copyOf(edgeOffsets, nodeCount);
+    for (int i = 0; i < edgeCount; i++)
+      order[fill[sources[i]]++] = i;
+
+    Integer[] sorted = new Integer[nodeCount];
+    for (int i = 0; i < nodeCount; i++)
+      sorted[i] = i;
+    Arrays.sort(sorted, (a, b) -> Arrays.compareUnsigned(nameBytes[a], nameBytes[b]));
+
+    Path target = Paths.get(snapshotFile).toAbsolutePath();
+    Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer out = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(edgeCount).putLong(nameLength);
+        for (int i = 0; i < edgeCount; i++)
+          flushIfFull(channel, out, 8).putDouble(weights[order[i]]);
+        for (int offset : edgeOffsets)
+          flushIfFull(channel, out, 4).putInt(offset);
+        for (int i = 0; i < edgeCount; i++)
+          flushIfFull(channel, out, 4).putInt(targets[order[i]]);
+        int nameOffset = 0;
+        for (int i = 0; i <= nodeCount; i++) {
+          flushIfFull(channel, out, 4).putInt(nameOffset);
+          if (i < nodeCount)
+            nameOffset += nameBytes[i].length;
+        }
+        for (int id : sorted)
+          flushIfFull(channel, out, 4).putInt(id);
+        for (byte[] bytes : nameBytes) {
+          for (byte b : bytes)
+            flushIfFull(channel, out, 1).put(b);
+        }
+        flush(channel, out);
+      }
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  // makes room for at least needed more bytes in out, writing its contents when it is full
+  private static ByteBuffer flushIfFull(FileChannel channel, ByteBuffer out, int needed)
+      throws IOException {
+    if (out.remaining() < needed)
+      flush(channel, out);
+    return out;
+  }
+
+  // writes the contents of out to the channel, leaving out empty
+  private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+    out.flip();
+    while (out.hasRemaining())
+      channel.write(out);
+    out.clear();
+  }
+}
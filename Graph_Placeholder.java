@@ -1,6 +1,8 @@
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Predicate;
 
 /**
  * This is a placeholder for the fully working Graph that you will develop
@@ -91,4 +93,42 @@ public class Graph_Placeholder implements GraphADT<String, Double> {
     return sum;
   }
 
+  // settles every location that follows start along the placeholder's path
+  public ShortestPathTree<String, Double> shortestPathTree(String start,
+      Collection<String> ends) {
+    int index = path.indexOf(start);
+    if(index < 0) throw new NoSuchElementException();
+    ShortestPathTree<String, Double> tree = new ShortestPathTree<>(start);
+    double cost = 0;
+    for(int i=index+1;i<path.size();i++) {
+      cost += i;
+      tree.settle(path.get(i),path.get(i-1),(double)i,cost);
+    }
+    return tree;
+  }
+
+  // the placeholder's path is all that can be reached from any location
+  public ShortestPathTree<String, Double> shortestPathTree(String start) {
+    return shortestPathTree(start, path);
+  }
+
+  // settles the locations that follow start along the path, up to maxCost
+  public ShortestPathTree<String, Double> boundedTree(String start, double maxCost) {
+    int index = path.indexOf(start);
+    if(index < 0) throw new NoSuchElementException();
+    ShortestPathTree<String, Double> tree = new ShortestPathTree<>(start);
+    double cost = 0;
+    for(int i=index+1;i<path.size() && cost+i <= maxCost;i++) {
+      cost += i;
+      tree.settle(path.get(i),path.get(i-1),(double)i,cost);
+    }
+    return tree;
+  }
+
+  // settles the same locations whatever the targets are
+  public ShortestPathTree<String, Double> nearestTree(String start,
+      Predicate<String> isTarget, int k) {
+    return shortestPathTree(start, path);
+  }
+
 }
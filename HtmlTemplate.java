@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * An html template that is read from disk and split around its placeholder comments only once.
+ * The text between placeholders is kept as pre-encoded UTF-8 byte segments, so that each page can
+ * be produced by copying those segments around the content for each slot, without building the
+ * page as a String or searching it with regular expressions.
+ */
+public class HtmlTemplate {
+  // segments[i] is the template text before slot i, and the last segment follows the last slot
+  private final byte[][] segments;
+
+  /**
+   * Reads a template file and splits it around the provided placeholders.
+   *
+   * @param filename     the path of the html template file
+   * @param placeholders the placeholder text for each slot, in the order they appear in the file
+   * @throws IOException if the file cannot be read, or if any placeholder is missing or out of order
+   */
+  public HtmlTemplate(String filename, String... placeholders) throws IOException {
+    String html = new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+    segments = new byte[placeholders.length + 1][];
+    int from = 0;
+    for (int i = 0; i < placeholders.length; i++) {
+      int at = html.indexOf(placeholders[i], from);
+      if (at < 0) {
+        throw new IOException(
+            "Template '" + filename + "' is missing placeholder: " + placeholders[i]);
+      }
+      segments[i] = html.substring(from, at).getBytes(StandardCharsets.UTF_8);
+      from = at + placeholders[i].length();
+    }
+    segments[placeholders.length] = html.substring(from).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the complete page with each slot filled in, encoded as UTF-8.
+   *
+   * @param contents the html to place in each slot, in slot order
+   * @return the bytes of the complete page
+   * @throws IllegalArgumentException if the number of contents does not match the number of slots
+   */
+  public byte[] render(String... contents) {
+    byte[][] encoded = encode(contents);
+    int length = 0;
+    for (int i = 0; i < segments.length; i++) {
+      length += segments[i].length + (i < encoded.length ? encoded[i].length : 0);
+    }
+    byte[] page = new byte[length];
+    int offset = 0;
+    for (int i = 0; i < segments.length; i++) {
+      System.arraycopy(segments[i], 0, page, offset, segments[i].length);
+      offset += segments[i].length;
+      if (i < encoded.length) {
+        System.arraycopy(encoded[i], 0, page, offset, encoded[i].length);
+        offset += encoded[i].length;
+      }
+    }
+    return page;
+  }
+
+  /**
+   * Writes the complete page with each slot filled in directly to an output stream.
+   *
+   * @param out      the stream to write the UTF-8 encoded page to
+   * @param contents the html to place in each slot, in slot order
+   * @throws IOException              if writing to the stream fails
+   * @throws IllegalArgumentException if the number of contents does not match the number of slots
+   */
+  public void write(OutputStream out, String... contents) throws IOException {
+    byte[][] encoded = encode(contents);
+    for (int i = 0; i < segments.length; i++) {
+      out.write(segments[i]);
+      if (i < encoded.length)
+        out.write(encoded[i]);
+    }
+  }
+
+  // encodes the content for each slot as UTF-8
+  private byte[][] encode(String[] contents) {
+    if (contents.length != segments.length - 1) {
+      throw new IllegalArgumentException(
+          "Expected " + (segments.length - 1) + " slot contents but got " + contents.length);
+    }
+    byte[][] encoded = new byte[contents.length][];
+    for (int i = 0; i < contents.length; i++)
+      encoded[i] = contents[i].getBytes(StandardCharsets.UTF_8);
+    return encoded;
+  }
+}
@@ -0,0 +1,165 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A min heap of int ids (from 0 up to a capacity) with double priorities, stored in primitive
+ * arrays. Each id is in the heap at most once, and since the heap knows where each id is, lowering
+ * an id's priority moves that entry rather than adding another one: Dijkstra's algorithm then holds
+ * at most one entry per node, and never pops entries that are out of date.
+ *
+ * It is a 4-ary heap, which is shallower than a binary heap, so moving an entry up (as lowering its
+ * priority does) takes fewer steps, and the four children compared when moving an entry down are
+ * next to each other in memory. Clearing the heap only visits the entries still in it, so one heap
+ * can be reused by many searches without being allocated again.
+ */
+public class IndexedHeap {
+  private static final int ARITY = 4;
+
+  private int[] ids; // the id at each slot of the heap
+  private double[] priorities; // the priority of the id at each slot
+  private int[] slots; // the slot of each id, or -1 when that id is not in the heap
+  private int size = 0;
+
+  /**
+   * Creates an empty heap for ids from 0 up to (but not including) capacity.
+   *
+   * @param capacity the number of ids the heap can hold
+   */
+  public IndexedHeap(int capacity) {
+    ids = new int[Math.max(capacity, 1)];
+    priorities = new double[Math.max(capacity, 1)];
+    slots = new int[Math.max(capacity, 1)];
+    Arrays.fill(slots, -1);
+  }
+
+  /**
+   * Makes room for ids from 0 up to (but not including) capacity, keeping the entries in the heap.
+   *
+   * @param capacity the number of ids the heap must be able to hold
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity <= slots.length)
+      return;
+    int old = slots.length;
+    int grown = Math.max(capacity, old * 2);
+    ids = Arrays.copyOf(ids, grown);
+    priorities = Arrays.copyOf(priorities, grown);
+    slots = Arrays.copyOf(slots, grown);
+    Arrays.fill(slots, old, grown, -1);
+  }
+
+  /**
+   * @return the number of ids in the heap
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true if the heap has no ids in it
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @param id the id to look for
+   * @return true if the id is in the heap
+   */
+  public boolean contains(int id) {
+    return slots[id] >= 0;
+  }
+
+  /**
+   * Adds an id with a priority, or lowers the priority of an id already in the heap. An id already
+   * in the heap at or below that priority is left as it is.
+   *
+   * @param id       the id to add
+   * @param priority its priority, where lower priorities are removed first
+   * @return true if the id was added or its priority was lowered
+   */
+  public boolean offer(int id, double priority) {
+    int slot = slots[id];
+    if (slot < 0) {
+      slot = size++;
+    } else if (priority >= priorities[slot]) {
+      return false;
+    }
+    siftUp(slot, id, priority);
+    return true;
+  }
+
+  /**
+   * @return the lowest priority of any id in the heap
+   * @throws NoSuchElementException if the heap is empty
+   */
+  public double peekPriority() {
+    if (size == 0)
+      throw new NoSuchElementException("The heap is empty");
+    return priorities[0];
+  }
+
+  /**
+   * Removes the id with the lowest priority.
+   *
+   * @return that id
+   * @throws NoSuchElementException if the heap is empty
+   */
+  public int poll() {
+    if (size == 0)
+      throw new NoSuchElementException("The heap is empty");
+    int first = ids[0];
+    slots[first] = -1;
+    if (--size > 0)
+      siftDown(0, ids[size], priorities[size]);
+    return first;
+  }
+
+  /**
+   * Removes every id from the heap, in time proportional to the number of ids in it.
+   */
+  public void clear() {
+    for (int i = 0; i < size; i++)
+      slots[ids[i]] = -1;
+    size = 0;
+  }
+
+  // moves an id with a priority up from a slot until its parent's priority is no higher
+  private void siftUp(int slot, int id, double priority) {
+    while (slot > 0) {
+      int parent = (slot - 1) / ARITY;
+      if (priorities[parent] <= priority)
+        break;
+      place(slot, ids[parent], priorities[parent]);
+      slot = parent;
+    }
+    place(slot, id, priority);
+  }
+
+  // moves an id with a priority down from a slot until none of its children's priorities are lower
+  private void siftDown(int slot, int id, double priority) {
+    while (true) {
+      int first = slot * ARITY + 1;
+      if (first >= size)
+        break;
+      int least = first;
+      int last = Math.min(first + ARITY, size);
+      for (int child = first + 1; child < last; child++) {
+        if (priorities[child] < priorities[least])
+          least = child;
+      }
+      if (priorities[least] >= priority)
+        break;
+      place(slot, ids[least], priorities[least]);
+      slot = least;
+    }
+    place(slot, id, priority);
+  }
+
+  // stores an id with a priority at a slot
+  private void place(int slot, int id, double priority) {
+    ids[slot] = id;
+    priorities[slot] = priority;
+    slots[id] = slot;
+  }
+}
@@ -0,0 +1,401 @@
+import com.sun.net.httpserver.HttpExchange;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
+/**
+ * Serves compact JSON versions of the WebApp's answers, built directly from BackendInterface
+ * results, for clients that only need the data rather than a complete html page:
+ *
+ *     /api/path?start=A&end=B   the shortest path from A to B, with the seconds for each leg
+ *     /api/longest?from=A       the longest list of locations on any shortest path from A
+ *     /api/locations            the names of every location
+ *     /api/suggest?q=A&limit=N  up to N (default 10) location names matching what a user has typed
+ *     /api/nearest?from=A&k=N&among=B|C|D
+ *                               the paths to the N (default 5) locations nearest to A, among the
+ *                               locations separated by | (or among all locations, when omitted)
+ *     /api/within?from=A&seconds=T
+ *                               every location within T seconds' walk of A, with its walking time
+ *     POST /api/batch           the shortest paths for many (start, end) pairs at once
+ *
+ * A batch request's body is form encoded (application/x-www-form-urlencoded), with one start and
+ * one end argument for each pair in order: start=A&end=B&start=C&end=D. Its response lists the
+ * result for each pair in that same order, streaming each one out as soon as it is ready.
+ *
+ * Location names given to /api/path, /api/longest, /api/nearest, and /api/within may differ from
+ * the actual names by case or a small typo, and are answered using the name they resolve to.
+ *
+ * Failed requests are answered with an appropriate status code and a body of the form
+ * {"error":"message"}.
+ */
+public class JsonApi {
+
+  // the largest number of pairs accepted in one batch request
+  private static final int MAX_BATCH_PAIRS = 10000;
+  // the number of suggestions returned when a request does not ask for a number, and the most
+  // that can be asked for
+  private static final int DEFAULT_SUGGESTIONS = 10;
+  private static final int MAX_SUGGESTIONS = 100;
+  // the number of nearest locations found when a request does not ask for a number, and the most
+  // that can be asked for
+  private static final int DEFAULT_NEAREST = 5;
+  private static final int MAX_NEAREST = 100;
+  // the largest batch request body accepted, in bytes
+  private static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+
+  // writes the body of one JSON response
+  private interface Body {
+    void write(JsonWriter json) throws IOException;
+  }
+
+  /**
+   * Answers one request made to an /api/ endpoint.
+   *
+   * @param exchange the exchange to respond to
+   * @param backend  the backend that computes the answers
+   * @throws IOException if the response cannot be sent
+   */
+  public static void handle(HttpExchange exchange, BackendInterface backend) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    Map<String, String> query = new HashMap<>();
+    try {
+      parseForm(exchange.getRequestURI().getRawQuery(), query::put);
+    } catch (IllegalArgumentException e) {
+      sendError(exchange, 400, "Malformed query: " + e.getMessage());
+      return;
+    }
+    switch (path) {
+      case "/api/path":
+        handlePath(exchange, backend, resolve(backend, query.get("start")),
+            resolve(backend, query.get("end")));
+        break;
+      case "/api/longest":
+        handleLongest(exchange, backend, resolve(backend, query.get("from")));
+        break;
+      case "/api/locations":
+        List<String> locations = backend.getListOfAllLocations();
+        send(exchange, 200, json -> {
+          json.beginObject().name("locations");
+          writeStrings(json, locations);
+          json.endObject();
+        });
+        break;
+      case "/api/suggest":
+        handleSuggest(exchange, backend, query.get("q"), query.get("limit"));
+        break;
+      case "/api/nearest":
+        handleNearest(exchange, backend, resolve(backend, query.get("from")), query.get("k"),
+            query.get("among"));
+        break;
+      case "/api/within":
+        handleWithin(exchange, backend, resolve(backend, query.get("from")), query.get("seconds"));
+        break;
+      case "/api/batch":
+        handleBatch(exchange, backend);
+        break;
+      default:
+        sendError(exchange, 404, "Unknown endpoint: " + path);
+    }
+  }
+
+  // answers /api/path with the locations, leg times, and total time of a shortest path
+  private static void handlePath(HttpExchange exchange, BackendInterface backend, String start,
+      String end) throws IOException {
+    if (start == null || end == null) {
+      sendError(exchange, 400, "Both start and end arguments are required");
+      return;
+    }
+    PathResult result = backend.findShortestPath(start, end);
+    if (!result.isFound()) {
+      sendError(exchange, 404, describeFailure(result));
+      return;
+    }
+    send(exchange, 200, json -> writeResult(json, result));
+  }
+
+  // answers /api/longest with the longest location list from a starting location
+  private static void handleLongest(HttpExchange exchange, BackendInterface backend, String from)
+      throws IOException {
+    if (from == null) {
+      sendError(exchange, 400, "The from argument is required");
+      return;
+    }
+    List<String> locations;
+    try {
+      locations = backend.getLongestLocationListFrom(from);
+    } catch (NoSuchElementException e) {
+      // an existing location resolves to itself, which is checked without any search
+      sendError(exchange, 404, from.equals(backend.resolveLocation(from))
+          ? "No paths found from " + from : "Start location does not exist: " + from);
+      return;
+    }
+    send(exchange, 200, json -> {
+      json.beginObject();
+      json.name("from").value(from);
+      json.name("locations");
+      writeStrings(json, locations);
+      json.endObject();
+    });
+  }
+
+  // answers /api/suggest with the location names that best match a partially typed query
+  private static void handleSuggest(HttpExchange exchange, BackendInterface backend, String q,
+      String limitArg) throws IOException {
+    if (q == null) {
+      sendError(exchange, 400, "The q argument is required");
+      return;
+    }
+    int limit = DEFAULT_SUGGESTIONS;
+    if (limitArg != null) {
+      try {
+        limit = Integer.parseInt(limitArg);
+      } catch (NumberFormatException e) {
+        limit = -1;
+      }
+      if (limit < 1 || limit > MAX_SUGGESTIONS) {
+        sendError(exchange, 400, "The limit argument must be from 1 to " + MAX_SUGGESTIONS);
+        return;
+      }
+    }
+    List<String> suggestions = backend.suggestLocations(q, limit);
+    send(exchange, 200, json -> {
+      json.beginObject();
+      json.name("query").value(q);
+      json.name("suggestions");
+      writeStrings(json, suggestions);
+      json.endObject();
+    });
+  }
+
+  // answers /api/nearest with the paths to the locations nearest to a starting location
+  private static void handleNearest(HttpExchange exchange, BackendInterface backend, String from,
+      String kArg, String among) throws IOException {
+    if (from == null) {
+      sendError(exchange, 400, "The from argument is required");
+      return;
+    }
+    int k = DEFAULT_NEAREST;
+    if (kArg != null) {
+      try {
+        k = Integer.parseInt(kArg);
+      } catch (NumberFormatException e) {
+        k = -1;
+      }
+      if (k < 1 || k > MAX_NEAREST) {
+        sendError(exchange, 400, "The k argument must be from 1 to " + MAX_NEAREST);
+        return;
+      }
+    }
+    List<String> candidates = null;
+    if (among != null) {
+      candidates = new ArrayList<>();
+      for (String name : among.split("\\|"))
+        candidates.add(resolve(backend, name));
+    }
+    List<PathResult> nearest;
+    try {
+      nearest = backend.findNearestLocations(from, candidates, k);
+    } catch (NoSuchElementException e) {
+      sendError(exchange, 404, "Start location does not exist: " + from);
+      return;
+    }
+    send(exchange, 200, json -> {
+      json.beginObject();
+      json.name("from").value(from);
+      json.name("nearest").beginArray();
+      for (PathResult result : nearest)
+        writeResult(json, result);
+      json.endArray().endObject();
+    });
+  }
+
+  // answers /api/within with every location within a walking time of a starting location
+  private static void handleWithin(HttpExchange exchange, BackendInterface backend, String from,
+      String secondsArg) throws IOException {
+    if (from == null || secondsArg == null) {
+      sendError(exchange, 400, "Both from and seconds arguments are required");
+      return;
+    }
+    double seconds;
+    try {
+      seconds = Double.parseDouble(secondsArg);
+    } catch (NumberFormatException e) {
+      seconds = -1;
+    }
+    if (!(seconds >= 0) || Double.isInfinite(seconds)) {
+      sendError(exchange, 400, "The seconds argument must be a number of at least 0");
+      return;
+    }
+    Map<String, Double> within;
+    try {
+      within = backend.findLocationsWithin(from, seconds);
+    } catch (NoSuchElementException e) {
+      sendError(exchange, 404, "Start location does not exist: " + from);
+      return;
+    }
+    double budget = seconds;
+    send(exchange, 200, json -> {
+      json.beginObject();
+      json.name("from").value(from);
+      json.name("seconds").value(budget);
+      json.name("locations").beginArray();
+      for (Map.Entry<String, Double> entry : within.entrySet()) {
+        json.beginObject();
+        json.name("location").value(entry.getKey());
+        json.name("seconds").value(entry.getValue());
+        json.endObject();
+      }
+      json.endArray().endObject();
+    });
+  }
+
+  // answers /api/batch with the shortest path for each (start, end) pair in the request body
+  private static void handleBatch(HttpExchange exchange, BackendInterface backend)
+      throws IOException {
+    if (!exchange.getRequestMethod().equals("POST")) {
+      exchange.getResponseHeaders().set("Allow", "POST");
+      sendError(exchange, 405, "Batch requests must be sent with POST");
+      return;
+    }
+    byte[] body = readBody(exchange.getRequestBody());
+    if (body == null) {
+      sendError(exchange, 413, "Batch request body exceeds " + MAX_BATCH_BYTES + " bytes");
+      return;
+    }
+
+    // collect the start and end arguments of each pair, in order
+    List<String> starts = new ArrayList<>();
+    List<String> ends = new ArrayList<>();
+    try {
+      parseForm(new String(body, StandardCharsets.UTF_8), (name, value) -> {
+        if (name.equals("start"))
+          starts.add(value);
+        else if (name.equals("end"))
+          ends.add(value);
+      });
+    } catch (IllegalArgumentException e) {
+      sendError(exchange, 400, "Malformed request body: " + e.getMessage());
+      return;
+    }
+    if (starts.size() != ends.size()) {
+      sendError(exchange, 400, "Every start argument needs a matching end argument");
+      return;
+    }
+    if (starts.size() > MAX_BATCH_PAIRS) {
+      sendError(exchange, 413, "Batch requests are limited to " + MAX_BATCH_PAIRS + " pairs");
+      return;
+    }
+
+    Iterator<PathResult> results = backend.findShortestPaths(starts, ends).iterator();
+    send(exchange, 200, json -> {
+      json.beginObject().name("results").beginArray();
+      for (int i = 0; results.hasNext(); i++) {
+        writeResult(json, results.next());
+        // hand completed results to the client while later ones are computed
+        if (i % 64 == 63)
+          json.flush();
+      }
+      json.endArray().endObject();
+    });
+  }
+
+  // writes one path result as an object with either its path or the reason it has none
+  private static void writeResult(JsonWriter json, PathResult result) throws IOException {
+    json.beginObject();
+    json.name("start").value(result.getStart());
+    json.name("end").value(result.getEnd());
+    if (result.isFound()) {
+      json.name("locations");
+      writeStrings(json, result.getLocations());
+      json.name("seconds").beginArray();
+      for (double leg : result.getTimes())
+        json.value(leg);
+      json.endArray();
+      json.name("totalSeconds").value(result.getTotalTime());
+    } else {
+      json.name("error").value(result.getFailure().toString());
+    }
+    json.endObject();
+  }
+
+  // reads the arguments of a form encoded string (a raw query, or a batch request's body) in
+  // order, splitting it at & and = before decoding each name and value, so that names containing
+  // an encoded & or = stay whole. An argument without = has an empty value.
+  private static void parseForm(String form, BiConsumer<String, String> arg) {
+    if (form == null)
+      return;
+    for (String part : form.split("&")) {
+      if (part.isEmpty())
+        continue;
+      int split = part.indexOf('=');
+      String name = split < 0 ? part : part.substring(0, split);
+      String value = split < 0 ? "" : part.substring(split + 1);
+      arg.accept(URLDecoder.decode(name, StandardCharsets.UTF_8),
+          URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+  }
+
+  // returns the location name that a requested name resolves to, or that name itself if it does not
+  // resolve to any single location (or is null)
+  private static String resolve(BackendInterface backend, String name) {
+    if (name == null)
+      return null;
+    String resolved = backend.resolveLocation(name);
+    return resolved != null ? resolved : name;
+  }
+
+  // reads a request body, or returns null when it is larger than MAX_BATCH_BYTES
+  private static byte[] readBody(InputStream in) throws IOException {
+    byte[] body = in.readNBytes(MAX_BATCH_BYTES + 1);
+    return body.length > MAX_BATCH_BYTES ? null : body;
+  }
+
+  // explains why no path could be found between two locations
+  private static String describeFailure(PathResult result) {
+    switch (result.getFailure()) {
+      case START_NOT_FOUND:
+      case START_AND_END_NOT_FOUND:
+        return "Start location does not exist: " + result.getStart();
+      case END_NOT_FOUND:
+        return "End location does not exist: " + result.getEnd();
+      default:
+        return "There is no path between " + result.getStart() + " and " + result.getEnd();
+    }
+  }
+
+  // writes a list of strings as a JSON array
+  private static void writeStrings(JsonWriter json, List<String> values) throws IOException {
+    json.beginArray();
+    for (String value : values)
+      json.value(value);
+    json.endArray();
+  }
+
+  // sends an error response of the form {"error":"message"}
+  private static void sendError(HttpExchange exchange, int status, String message)
+      throws IOException {
+    send(exchange, status, json -> json.beginObject().name("error").value(message).endObject());
+  }
+
+  // streams a JSON body back to the client using chunked transfer encoding
+  private static void send(HttpExchange exchange, int status, Body body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, 0);
+    try (BufferedWriter out = new BufferedWriter(
+        new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+      JsonWriter json = new JsonWriter(out);
+      body.write(json);
+      json.flush();
+    }
+  }
+}
@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A minimal streaming JSON writer. Values are written to the underlying Writer as soon as they are
+ * provided, so that documents never need to be assembled in memory as a String. Callers are
+ * responsible for nesting calls correctly: names may only be written inside objects, and every
+ * begin call must be matched by the corresponding end call.
+ */
+public class JsonWriter {
+  private final Writer out;
+  // for each open object or array, whether a value has already been written into it
+  private boolean[] hasValue = new boolean[8];
+  private int depth = 0;
+  // true between writing a name and writing the value that goes with it
+  private boolean afterName = false;
+
+  /**
+   * Creates a writer that emits JSON text to the provided Writer.
+   *
+   * @param out the destination for the JSON text
+   */
+  public JsonWriter(Writer out) {
+    this.out = out;
+  }
+
+  /**
+   * Begins a new JSON object.
+   *
+   * @return this writer
+   * @throws IOException if writing fails
+   */
+  public JsonWriter beginObject() throws IOException {
+    return open('{');
+  }
+
+  /**
+   * Ends the current JSON object.
+   *
+   * @return this writer
+   * @throws IOException if writing fails
+   */
+  public JsonWriter endObject() throws IOException {
+    return close('}');
+  }
+
+  /**
+   * Begins a new JSON array.
+   *
+   * @return this writer
+   * @throws IOException if writing fails
+   */
+  public JsonWriter beginArray() throws IOException {
+    return open('[');
+  }
+
+  /**
+   * Ends the current JSON array.
+   *
+   * @return this writer
+   * @throws IOException if writing fails
+   */
+  public JsonWriter endArray() throws IOException {
+    return close(']');
+  }
+
+  /**
+   * Writes the name of the next member of the current object.
+   *
+   * @param name the member name
+   * @return this writer
+   * @throws IOException if writing fails
+   */
+  public JsonWriter name(String name) throws IOException {
+    separate();
+    writeString(name);
+    out.write(':');
+    afterName = true;
+    return this;
+  }
+
+  /**
+   * Writes a string value, or null when value is null.
+   *
+   * @param value the string to write
+   * @return this writer
+   * @throws IOException if writing fails
+   */
+  public JsonWriter value(String value) throws IOException {
+    if (value == null)
+      return nullValue();
+    separate();
+    writeString(value);
+    return this;
+  }
+
+  /**
+   * Writes a numeric value. NaN and infinite values have no JSON representation, and are written
+   * as null instead.
+   *
+   * @param value the number to write
+   * @return this writer
+   * @throws IOException if writing fails
+   */
+  public JsonWriter value(double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value))
+      return nullValue();
+    separate();
+    out.write(Double.toString(value));
+    return this;
+  }
+
+  /**
+   * Writes an integer value.
+   *
+   * @param value the number to write
+   * @return this writer
+   * @throws IOException if writing fails
+   */
+  public JsonWriter value(long value) throws IOException {
+    separate();
+    out.write(Long.toString(value));
+    return this;
+  }
+
+  /**
+   * Writes a boolean value.
+   *
+   * @param value the boolean to write
+   * @return this writer
+   * @throws IOException if writing fails
+   */
+  public JsonWriter value(boolean value) throws IOException {
+    separate();
+    out.write(value ? "true" : "false");
+    return this;
+  }
+
+  /**
+   * Writes a null value.
+   *
+   * @return this writer
+   * @throws IOException if writing fails
+   */
+  public JsonWriter nullValue() throws IOException {
+    separate();
+    out.write("null");
+    return this;
+  }
+
+  /**
+   * Flushes the underlying Writer.
+   *
+   * @throws IOException if flushing fails
+   */
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  // writes the opening bracket of a new object or array
+  private JsonWriter open(char bracket) throws IOException {
+    separate();
+    out.write(bracket);
+    if (depth == hasValue.length) {
+      boolean[] larger = new boolean[depth * 2];
+      System.arraycopy(hasValue, 0, larger, 0, depth);
+      hasValue = larger;
+    }
+    hasValue[depth++] = false;
+    return this;
+  }
+
+  // writes the closing bracket of the current object or array
+  private JsonWriter close(char bracket) throws IOException {
+    if (depth == 0)
+      throw new IllegalStateException("No open object or array to end");
+    depth--;
+    out.write(bracket);
+    return this;
+  }
+
+  // writes the comma that separates a value from the one before it, when needed
+  private void separate() throws IOException {
+    if (afterName) {
+      afterName = false;
+      return;
+    }
+    if (depth > 0) {
+      if (hasValue[depth - 1])
+        out.write(',');
+      hasValue[depth - 1] = true;
+    }
+  }
+
+  // writes a quoted string, escaping the characters that JSON requires
+  private void writeString(String value) throws IOException {
+    out.write('"');
+    int start = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c != '"' && c != '\\' && c >= 0x20)
+        continue;
+      out.write(value, start, i - start);
+      switch (c) {
+        case '"':
+          out.write("\\\"");
+          break;
+        case '\\':
+          out.write("\\\\");
+          break;
+        case '\n':
+          out.write("\\n");
+          break;
+        case '\r':
+          out.write("\\r");
+          break;
+        case '\t':
+          out.write("\\t");
+          break;
+        default:
+          out.write(String.format("\\u%04x", (int) c));
+      }
+      start = i + 1;
+    }
+    out.write(value, start, value.length() - start);
+    out.write('"');
+  }
+}
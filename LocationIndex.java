@@ -0,0 +1,319 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An in-memory search index over location names, built once when the graph is loaded. It supports
+ * two kinds of lookups without scanning every name:
+ *
+ * - case-insensitive prefix search, through a trie packed into flat arrays. Names are sorted so
+ *   that all of the names below any trie node form one contiguous range, which is stored with the
+ *   node, so a prefix lookup only walks the prefix's characters.
+ * - typo-tolerant search, through an inverted index from each character trigram to the names that
+ *   contain it. Names sharing the most trigrams with a query are then ranked by edit distance.
+ */
+public class LocationIndex {
+  private final String[] names; // original names, sorted by their lower case keys
+  private final String[] keys; // lower case names, sorted
+
+  // the trie: node 0 is the root, and the children of node n are stored at
+  // [childStart[n], childStart[n] + childCount[n]) in childLabels and childNodes, sorted by label
+  private final int[] childStart;
+  private final int[] childCount;
+  private final char[] childLabels;
+  private final int[] childNodes;
+  // the names whose keys start with the prefix spelled by node n are [rangeStart[n], rangeEnd[n])
+  private final int[] rangeStart;
+  private final int[] rangeEnd;
+  private int nodeCount = 0;
+  private int edgeCount = 0;
+
+  // trigram -> indexes of the names that contain it, and the number of trigrams in each name
+  private final Map<Long, int[]> postings = new HashMap<>();
+  private final int[] gramCounts;
+
+  /**
+   * Builds an index over a collection of location names.
+   *
+   * @param locations the names to index
+   */
+  public LocationIndex(Collection<String> locations) {
+    String[] sorted = locations.toArray(new String[0]);
+    Arrays.sort(sorted, (a, b) -> key(a).compareTo(key(b)));
+    names = sorted;
+    keys = new String[names.length];
+    int characters = 0;
+    for (int i = 0; i < names.length; i++) {
+      keys[i] = key(names[i]);
+      characters += keys[i].length();
+    }
+
+    // a trie never has more nodes than its keys have characters, plus the root
+    childStart = new int[characters + 1];
+    childCount = new int[characters + 1];
+    rangeStart = new int[characters + 1];
+    rangeEnd = new int[characters + 1];
+    childLabels = new char[characters];
+    childNodes = new int[characters];
+    buildTrie(0, 0, keys.length);
+
+    gramCounts = new int[names.length];
+    Map<Long, List<Integer>> lists = new HashMap<>();
+    for (int i = 0; i < keys.length; i++) {
+      long[] grams = trigrams(keys[i]);
+      gramCounts[i] = grams.length;
+      for (long gram : grams)
+        lists.computeIfAbsent(gram, g -> new ArrayList<>()).add(i);
+    }
+    for (Map.Entry<Long, List<Integer>> entry : lists.entrySet())
+      postings.put(entry.getKey(), entry.getValue().stream().mapToInt(i -> i).toArray());
+  }
+
+  /**
+   * @return the number of names in this index
+   */
+  public int size() {
+    return names.length;
+  }
+
+  /**
+   * Returns names that start with a prefix, ignoring case, in alphabetical order.
+   *
+   * @param prefix the beginning of the names to find
+   * @param limit  the most names to return
+   * @return up to limit names that start with prefix
+   */
+  public List<String> complete(String prefix, int limit) {
+    int node = findNode(key(prefix));
+    List<String> matches = new ArrayList<>();
+    if (node < 0)
+      return matches;
+    for (int i = rangeStart[node]; i < rangeEnd[node] && matches.size() < limit; i++)
+      matches.add(names[i]);
+    return matches;
+  }
+
+  /**
+   * Returns suggestions for a partially typed or misspelled name: names that start with the query
+   * come first, followed by the names most similar to it.
+   *
+   * @param query the text typed so far
+   * @param limit the most names to return
+   * @return up to limit suggested names, best first
+   */
+  public List<String> suggest(String query, int limit) {
+    LinkedHashSet<String> suggestions = new LinkedHashSet<>(complete(query, limit));
+    for (String name : similar(query, limit)) {
+      if (suggestions.size() >= limit)
+        break;
+      suggestions.add(name);
+    }
+    return new ArrayList<>(suggestions);
+  }
+
+  /**
+   * Resolves a name that may differ from a location's name by case, surrounding spaces, or a small
+   * typo. An exact match always wins. Otherwise, the single name that is equal ignoring case, or
+   * else that is closest by edit distance (within about one edit per five characters), is returned.
+   *
+   * @param name the name to resolve
+   * @return the matching location name, or null if there is no match or the closest ones are tied
+   */
+  public String resolve(String name) {
+    String key = key(name);
+    int node = findNode(key);
+    if (node >= 0) {
+      // the names equal to key (ignoring case) sort first in their node's range
+      for (int i = rangeStart[node]; i < rangeEnd[node] && keys[i].equals(key); i++) {
+        if (names[i].equals(name))
+          return names[i];
+      }
+      if (rangeStart[node] < rangeEnd[node] && keys[rangeStart[node]].equals(key)) {
+        boolean unique = rangeStart[node] + 1 == rangeEnd[node]
+            || !keys[rangeStart[node] + 1].equals(key);
+        return unique ? names[rangeStart[node]] : null;
+      }
+    }
+
+    // otherwise look for the closest misspelling among the most similar names
+    int maxDistance = Math.max(1, key.length() / 5);
+    String best = null;
+    int bestDistance = maxDistance + 1;
+    boolean tied = false;
+    for (int i : similarIndexes(key, 8)) {
+      int distance = editDistance(key, keys[i]);
+      if (distance < bestDistance) {
+        best = names[i];
+        bestDistance = distance;
+        tied = false;
+      } else if (distance == bestDistance) {
+        tied = true;
+      }
+    }
+    return tied ? null : best;
+  }
+
+  // returns up to limit names that share the most trigrams with query
+  private List<String> similar(String query, int limit) {
+    List<String> matches = new ArrayList<>();
+    for (int i : similarIndexes(key(query), limit))
+      matches.add(names[i]);
+    return matches;
+  }
+
+  // a thread's arrays for counting shared trigrams, which are indexed by name and reused by each
+  // of its lookups in any index. A count only holds for a name stamped with the current lookup's
+  // stamp, so the arrays never have to be cleared between lookups.
+  private static class Workspace {
+    int[] shared = new int[0]; // the number of the query's trigrams that each name contains
+    int[] countedBy = new int[0]; // the stamp of the last lookup that counted each name
+    int[] touched = new int[0]; // the names counted by this lookup, in the order first counted
+    int stamp = 0;
+
+    // prepares this workspace for a lookup over nameCount names
+    void reset(int nameCount) {
+      if (shared.length < nameCount) {
+        int capacity = Math.max(nameCount, shared.length * 2);
+        shared = new int[capacity];
+        countedBy = new int[capacity];
+        touched = new int[capacity];
+        stamp = 0;
+      }
+      if (++stamp == Integer.MAX_VALUE) {
+        // start the stamps over before they could repeat
+        Arrays.fill(countedBy, 0);
+        stamp = 1;
+      }
+    }
+  }
+
+  // each thread's lookup workspace
+  private static final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+  // returns the indexes of up to limit names ranked by their trigram similarity to key, with
+  // names that were counted first winning ties
+  private int[] similarIndexes(String key, int limit) {
+    long[] grams = trigrams(key);
+    Workspace workspace = workspaces.get();
+    workspace.reset(names.length);
+    int[] shared = workspace.shared;
+    int[] countedBy = workspace.countedBy;
+    int[] touched = workspace.touched;
+    int stamp = workspace.stamp;
+    int touchedCount = 0;
+    for (long gram : grams) {
+      int[] posting = postings.get(gram);
+      if (posting == null)
+        continue;
+      for (int i : posting) {
+        if (countedBy[i] != stamp) {
+          countedBy[i] = stamp;
+          shared[i] = 0;
+          touched[touchedCount++] = i;
+        }
+        shared[i]++;
+      }
+    }
+    // keep the limit best by the Dice coefficient of the two trigram sets, best first
+    int[] best = new int[Math.min(limit, touchedCount)];
+    double[] bestScores = new double[best.length];
+    int kept = 0;
+    for (int t = 0; t < touchedCount && best.length > 0; t++) {
+      int i = touched[t];
+      double score = 2.0 * shared[i] / (grams.length + gramCounts[i]);
+      if (kept == best.length && score <= bestScores[kept - 1])
+        continue;
+      int at = kept < best.length ? kept++ : kept - 1;
+      while (at > 0 && bestScores[at - 1] < score) {
+        best[at] = best[at - 1];
+        bestScores[at] = bestScores[at - 1];
+        at--;
+      }
+      best[at] = i;
+      bestScores[at] = score;
+    }
+    return best;
+  }
+
+  // returns the trie node spelling key, or -1 if no indexed name starts with key
+  private int findNode(String key) {
+    int node = 0;
+    for (int depth = 0; depth < key.length() && node >= 0; depth++) {
+      int from = childStart[node];
+      int at = Arrays.binarySearch(childLabels, from, from + childCount[node], key.charAt(depth));
+      node = at < 0 ? -1 : childNodes[at];
+    }
+    return node;
+  }
+
+  // adds a node for the keys in [from, to), which all share their first depth characters
+  private int buildTrie(int depth, int from, int to) {
+    int node = nodeCount++;
+    rangeStart[node] = from;
+    rangeEnd[node] = to;
+    // keys that end at this node sort before any longer ones
+    int first = from;
+    while (first < to && keys[first].length() == depth)
+      first++;
+    // reserve one contiguous slot per distinct next character, then fill them in
+    int children = 0;
+    for (int i = first; i < to; i++) {
+      if (i == first || keys[i].charAt(depth) != keys[i - 1].charAt(depth))
+        children++;
+    }
+    childStart[node] = edgeCount;
+    childCount[node] = children;
+    int slot = edgeCount;
+    edgeCount += children;
+    for (int i = first; i < to; slot++) {
+      char label = keys[i].charAt(depth);
+      int end = i;
+      while (end < to && keys[end].charAt(depth) == label)
+        end++;
+      childLabels[slot] = label;
+      childNodes[slot] = buildTrie(depth + 1, i, end);
+      i = end;
+    }
+    return node;
+  }
+
+  // normalizes a name for case-insensitive comparison
+  private static String key(String name) {
+    return name.trim().toLowerCase(Locale.ROOT);
+  }
+
+  // returns the distinct character trigrams of a key padded with spaces, each packed into a long
+  private static long[] trigrams(String key) {
+    String padded = "  " + key + " ";
+    LinkedHashSet<Long> grams = new LinkedHashSet<>();
+    for (int i = 0; i + 3 <= padded.length(); i++) {
+      grams.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16)
+          | padded.charAt(i + 2));
+    }
+    return grams.stream().mapToLong(g -> g).toArray();
+  }
+
+  // returns the Levenshtein distance between two strings
+  private static int editDistance(String a, String b) {
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++)
+      previous[j] = j;
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      for (int j = 1; j <= b.length(); j++) {
+        int substitute = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[b.length()];
+  }
+}
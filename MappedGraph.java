@@ -0,0 +1,508 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * A read-only graph that answers queries straight from a memory mapped snapshot file (see
+ * GraphSnapshot for its format). Opening a snapshot only maps it and checks its header, so the
+ * time that takes and the heap that the open graph uses stay about the same no matter how large
+ * the graph is: its nodes, edges, and names are paged in by the operating system as they are used.
+ *
+ * Nodes are looked up by name with a binary search over the snapshot's sorted names, and searches
+ * run Dijkstra's algorithm over its flat edge arrays. Each thread reuses one set of search arrays
+ * for all of its searches, so a query only allocates for the nodes it settles, and only decodes the
+ * names of the nodes in its answer. Every method that would change the graph throws
+ * UnsupportedOperationException.
+ */
+public class MappedGraph implements GraphADT<String, Double> {
+  private final MappedByteBuffer buffer;
+  private final int nodeCount;
+  private final int edgeCount;
+  // byte positions of each section within the snapshot
+  private final int weightsStart;
+  private final int edgeOffsetsStart;
+  private final int targetsStart;
+  private final int nameOffsetsStart;
+  private final int sortedIdsStart;
+  private final int namesStart;
+
+  /**
+   * Opens a snapshot file.
+   *
+   * @param filename the path of the snapshot to open
+   * @throws IOException if the file cannot be read, or is not a snapshot in a supported format
+   */
+  public MappedGraph(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < GraphSnapshot.HEADER_BYTES || size > Integer.MAX_VALUE)
+        throw new IOException(filename + " is not a graph snapshot");
+      // the mapping stays valid after the channel is closed
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getInt(0) != GraphSnapshot.MAGIC)
+      throw new IOException(filename + " is not a graph snapshot");
+    if (buffer.getInt(4) != GraphSnapshot.VERSION)
+      throw new IOException(filename + " is a snapshot in unsupported format version "
+          + buffer.getInt(4) + " (expected " + GraphSnapshot.VERSION + ")");
+    nodeCount = buffer.getInt(8);
+    edgeCount = buffer.getInt(12);
+    long nameLength = buffer.getLong(16);
+    weightsStart = GraphSnapshot.HEADER_BYTES;
+    edgeOffsetsStart = weightsStart + 8 * edgeCount;
+    targetsStart = edgeOffsetsStart + 4 * (nodeCount + 1);
+    nameOffsetsStart = targetsStart + 4 * edgeCount;
+    sortedIdsStart = nameOffsetsStart + 4 * (nodeCount + 1);
+    namesStart = sortedIdsStart + 4 * nodeCount;
+    if (nodeCount < 0 || edgeCount < 0 || namesStart + nameLength != buffer.capacity())
+      throw new IOException(filename + " is a truncated or damaged graph snapshot");
+  }
+
+  /**
+   * Returns the id of the node with a name, found by a binary search over the sorted names.
+   *
+   * @param name the name of the node
+   * @return the node's id, from 0 up to getNodeCount(), or -1 if there is no such node
+   */
+  public int getNodeId(String name) {
+    byte[] key = name.getBytes(StandardCharsets.UTF_8);
+    int low = 0;
+    int high = nodeCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int id = buffer.getInt(sortedIdsStart + 4 * middle);
+      int comparison = compareName(id, key);
+      if (comparison < 0)
+        low = middle + 1;
+      else if (comparison > 0)
+        high = middle - 1;
+      else
+        return id;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the name of the node with an id.
+   *
+   * @param id the id of the node
+   * @return that node's name
+   * @throws IndexOutOfBoundsException if id is not from 0 up to getNodeCount()
+   */
+  public String getNodeData(int id) {
+    if (id < 0 || id >= nodeCount)
+      throw new IndexOutOfBoundsException("No node with id " + id);
+    int start = nameOffset(id);
+    byte[] bytes = new byte[nameOffset(id + 1) - start];
+    // read through a duplicate, whose position is not shared with other threads
+    ByteBuffer names = buffer.duplicate();
+    names.position(namesStart + start);
+    names.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public boolean insertNode(String data) {
+    throw new UnsupportedOperationException("A mapped graph cannot be changed");
+  }
+
+  @Override
+  public boolean removeNode(String data) {
+    throw new UnsupportedOperationException("A mapped graph cannot be changed");
+  }
+
+  @Override
+  public boolean containsNode(String data) {
+    return getNodeId(data) >= 0;
+  }
+
+  @Override
+  public List<String> getAllNodes() {
+    List<String> all = new ArrayList<>(nodeCount);
+    for (int id = 0; id < nodeCount; id++)
+      all.add(getNodeData(id));
+    return all;
+  }
+
+  @Override
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  @Override
+  public boolean insertEdge(String pred, String succ, Double weight) {
+    throw new UnsupportedOperationException("A mapped graph cannot be changed");
+  }
+
+  @Override
+  public boolean removeEdge(String pred, String succ) {
+    throw new UnsupportedOperationException("A mapped graph cannot be changed");
+  }
+
+  @Override
+  public boolean containsEdge(String pred, String succ) {
+    return findEdge(getNodeId(pred), getNodeId(succ)) >= 0;
+  }
+
+  @Override
+  public Double getEdge(String pred, String succ) {
+    int edge = findEdge(getNodeId(pred), getNodeId(succ));
+    if (edge < 0)
+      throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+    return weight(edge);
+  }
+
+  @Override
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * Returns the names along the shortest path from start to end, found by a search that stops
+   * once end is settled. Only the names along that path are decoded.
+   */
+  @Override
+  public List<String> shortestPathData(String start, String end) {
+    Workspace workspace = acquireWorkspace();
+    try {
+      List<String> path = new ArrayList<>();
+      for (int id = searchTo(workspace, start, end); id != workspace.source;
+          id = workspace.predecessor[id])
+        path.add(getNodeData(id));
+      path.add(getNodeData(workspace.source));
+      Collections.reverse(path);
+      return path;
+    } finally {
+      releaseWorkspace(workspace);
+    }
+  }
+
+  /**
+   * Reads the path from the predecessors that a search to end leaves in the workspace, so that
+   * only the names along it are decoded and no tree is built.
+   */
+  @Override
+  public boolean shortestPath(String start, String end, List<String> nodes, List<Double> edges) {
+    int source = getNodeId(start);
+    int target = getNodeId(end);
+    if (source < 0 || target < 0)
+      return false;
+    Workspace workspace = acquireWorkspace();
+    try {
+      workspace.reset(nodeCount, source);
+      search(workspace, id -> id == target, 1, Double.POSITIVE_INFINITY);
+      if (!workspace.isSettled(target))
+        return false;
+      // walk back from end, then put what was added in order from start
+      int firstNode = nodes.size();
+      int firstEdge = edges.size();
+      for (int id = target; id != source; id = workspace.predecessor[id]) {
+        nodes.add(getNodeData(id));
+        edges.add(weight(workspace.predecessorEdge[id]));
+      }
+      nodes.add(getNodeData(source));
+      Collections.reverse(nodes.subList(firstNode, nodes.size()));
+      Collections.reverse(edges.subList(firstEdge, edges.size()));
+      return true;
+    } finally {
+      releaseWorkspace(workspace);
+    }
+  }
+
+  @Override
+  public double shortestPathCost(String start, String end) {
+    Workspace workspace = acquireWorkspace();
+    try {
+      return workspace.cost[searchTo(workspace, start, end)];
+    } finally {
+      releaseWorkspace(workspace);
+    }
+  }
+
+  /**
+   * Returns the shortest paths from start to every node in ends, found by a single search that
+   * stops once all of those nodes are settled. Only the nodes along those paths are included in
+   * the returned tree, so that names are only decoded for the nodes that are needed.
+   *
+   * @param start the name of the starting node for every path
+   * @param ends  the names of the destination nodes for the paths
+   * @return the tree of shortest paths found from start
+   * @throws NoSuchElementException if start is not in this graph
+   */
+  @Override
+  public ShortestPathTree<String, Double> shortestPathTree(String start, Collection<String> ends) {
+    int source = requireNode(start);
+    Workspace workspace = acquireWorkspace();
+    try {
+      workspace.reset(nodeCount, source);
+      int stamp = workspace.stamp;
+      int[] endBy = workspace.endBy;
+      int[] keptBy = workspace.keptBy;
+      int remaining = 0;
+      for (String end : ends) {
+        int id = getNodeId(end);
+        if (id >= 0 && endBy[id] != stamp) {
+          endBy[id] = stamp;
+          remaining++;
+        }
+      }
+      search(workspace, id -> endBy[id] == stamp, remaining, Double.POSITIVE_INFINITY);
+
+      // keep only the settled nodes on a path to one of the ends
+      for (int i = 0; i < workspace.settledCount; i++) {
+        for (int id = workspace.settled[i]; endBy[id] == stamp && keptBy[id] != stamp; ) {
+          keptBy[id] = stamp;
+          if (id != source) {
+            id = workspace.predecessor[id];
+            endBy[id] = stamp; // so that its own path is kept as well
+          }
+        }
+      }
+      return buildTree(workspace, id -> keptBy[id] == stamp);
+    } finally {
+      releaseWorkspace(workspace);
+    }
+  }
+
+  @Override
+  public ShortestPathTree<String, Double> shortestPathTree(String start) {
+    return searchTree(requireNode(start), null, 0, Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Returns the shortest paths from start to its k nearest other nodes whose names satisfy
+   * isTarget, found by a single search that stops once k of them are settled. Names are only
+   * decoded for the nodes that the search settles.
+   *
+   * @param start    the name of the starting node for every path
+   * @param isTarget whether a node's name makes it one of the targets
+   * @param k        the number of targets to stop after
+   * @return the tree of shortest paths found from start
+   * @throws NoSuchElementException if start is not in this graph
+   */
+  @Override
+  public ShortestPathTree<String, Double> nearestTree(String start, Predicate<String> isTarget,
+      int k) {
+    int source = requireNode(start);
+    return searchTree(source, id -> id != source && isTarget.test(getNodeData(id)), k,
+        Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Returns the shortest paths from start to every node within maxCost of it, found by a single
+   * search that never follows an edge past that cost.
+   *
+   * @param start   the name of the starting node for every path
+   * @param maxCost the largest path cost to include
+   * @return the tree of shortest paths from start to every node within maxCost of it
+   * @throws NoSuchElementException if start is not in this graph
+   */
+  @Override
+  public ShortestPathTree<String, Double> boundedTree(String start, double maxCost) {
+    return searchTree(requireNode(start), null, 0, maxCost);
+  }
+
+  // a thread's arrays for searching, which are indexed by node id and reused by each of its
+  // searches over any mapped graph. An entry only counts when that node is stamped with the
+  // current search's stamp, so the arrays never have to be cleared between searches.
+  private static class Workspace {
+    IndexedHeap heap = new IndexedHeap(16);
+    double[] cost = new double[0]; // the cost of the cheapest path found to each node
+    int[] predecessor = new int[0]; // the node before each node along that path
+    int[] predecessorEdge = new int[0]; // the edge from that predecessor, or -1 for the source
+    int[] reachedBy = new int[0]; // the stamp of the last search that reached each node
+    int[] endBy = new int[0]; // the stamp of the last search that was looking for each node
+    int[] keptBy = new int[0]; // the stamp of the last search whose tree kept each node
+    int[] settled = new int[0]; // node ids in the order they were settled
+    String[] names = new String[0]; // the names decoded for the tree being built
+    int settledCount = 0;
+    int source = -1;
+    int stamp = 0;
+    boolean inUse = false;
+
+    // prepares this workspace for a new search from source over nodeCount nodes
+    void reset(int nodeCount, int source) {
+      heap.clear();
+      heap.ensureCapacity(nodeCount);
+      if (cost.length < nodeCount) {
+        int capacity = Math.max(nodeCount, cost.length * 2);
+        cost = new double[capacity];
+        predecessor = new int[capacity];
+        predecessorEdge = new int[capacity];
+        reachedBy = new int[capacity];
+        endBy = new int[capacity];
+        keptBy = new int[capacity];
+        settled = new int[capacity];
+        names = new String[capacity];
+        stamp = 0;
+      }
+      settledCount = 0;
+      this.source = source;
+      if (++stamp == Integer.MAX_VALUE) {
+        // start the stamps over before they could repeat
+        Arrays.fill(reachedBy, 0);
+        Arrays.fill(endBy, 0);
+        Arrays.fill(keptBy, 0);
+        stamp = 1;
+      }
+    }
+
+    // records the cheapest path found so far to a node
+    void reach(int id, double pathCost, int from, int edge) {
+      reachedBy[id] = stamp;
+      cost[id] = pathCost;
+      predecessor[id] = from;
+      predecessorEdge[id] = edge;
+    }
+
+    boolean isSettled(int id) {
+      return reachedBy[id] == stamp && !heap.contains(id);
+    }
+  }
+
+  // each thread's search workspace
+  private static final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+  // takes the calling thread's workspace, or a new one if that is already in use by a search
+  // further up the calling thread's stack (such as from a nearestTree target test)
+  private static Workspace acquireWorkspace() {
+    Workspace workspace = workspaces.get();
+    if (workspace.inUse)
+      workspace = new Workspace();
+    workspace.inUse = true;
+    return workspace;
+  }
+
+  // returns a workspace taken by acquireWorkspace(), dropping the names it decoded
+  private static void releaseWorkspace(Workspace workspace) {
+    for (int i = 0; i < workspace.settledCount; i++)
+      workspace.names[workspace.settled[i]] = null;
+    workspace.inUse = false;
+  }
+
+  // searches from start until end is settled, and returns the id of end
+  private int searchTo(Workspace workspace, String start, String end) {
+    int source = requireNode(start);
+    int target = getNodeId(end);
+    workspace.reset(nodeCount, source);
+    if (target >= 0)
+      search(workspace, id -> id == target, 1, Double.POSITIVE_INFINITY);
+    if (target < 0 || !workspace.isSettled(target))
+      throw new NoSuchElementException("No shortest path found to " + end);
+    return target;
+  }
+
+  // runs a search from source and settles every node it settled into a tree
+  private ShortestPathTree<String, Double> searchTree(int source, IntPredicate isEnd,
+      int remaining, double maxCost) {
+    Workspace workspace = acquireWorkspace();
+    try {
+      workspace.reset(nodeCount, source);
+      search(workspace, isEnd, remaining, maxCost);
+      return buildTree(workspace, null);
+    } finally {
+      releaseWorkspace(workspace);
+    }
+  }
+
+  // runs Dijkstra's algorithm from the workspace's source, stopping once remaining nodes that
+  // satisfy isEnd are settled (or, when isEnd is null, once every reachable node is settled), and
+  // never reaching past maxCost
+  private void search(Workspace workspace, IntPredicate isEnd, int remaining, double maxCost) {
+    IndexedHeap heap = workspace.heap;
+    workspace.reach(workspace.source, 0, -1, -1);
+    heap.offer(workspace.source, 0);
+    while (!heap.isEmpty() && (isEnd == null || remaining > 0)) {
+      int node = heap.poll();
+      double cost = workspace.cost[node];
+      workspace.settled[workspace.settledCount++] = node;
+      if (isEnd != null && isEnd.test(node))
+        remaining--;
+      int last = buffer.getInt(edgeOffsetsStart + 4 * (node + 1));
+      for (int edge = buffer.getInt(edgeOffsetsStart + 4 * node); edge < last; edge++) {
+        int target = buffer.getInt(targetsStart + 4 * edge);
+        double newCost = cost + weight(edge);
+        // a settled node already costs no more than newCost, so it is never reached again
+        boolean reached = workspace.reachedBy[target] == workspace.stamp;
+        if (newCost <= maxCost && (!reached || newCost < workspace.cost[target])) {
+          workspace.reach(target, newCost, node, edge);
+          heap.offer(target, newCost);
+        }
+      }
+    }
+  }
+
+  // settles the nodes of a search into a tree, in the order they were settled, keeping only the
+  // ones that satisfy keep (or every one, when keep is null)
+  private ShortestPathTree<String, Double> buildTree(Workspace workspace, IntPredicate keep) {
+    String[] names = workspace.names;
+    int source = workspace.source;
+    names[source] = getNodeData(source);
+    ShortestPathTree<String, Double> tree = new ShortestPathTree<>(names[source]);
+    for (int i = 1; i < workspace.settledCount; i++) {
+      int id = workspace.settled[i];
+      if (keep != null && !keep.test(id))
+        continue;
+      names[id] = getNodeData(id);
+      tree.settle(names[id], names[workspace.predecessor[id]],
+          weight(workspace.predecessorEdge[id]), workspace.cost[id]);
+    }
+    return tree;
+  }
+
+  // returns the id of a node, or throws when it is not in this graph
+  private int requireNode(String name) {
+    int id = getNodeId(name);
+    if (id < 0)
+      throw new NoSuchElementException("Start node does not exist.");
+    return id;
+  }
+
+  // returns the index of the edge from one node to another, or -1 when there is none
+  private int findEdge(int pred, int succ) {
+    if (pred < 0 || succ < 0)
+      return -1;
+    int last = buffer.getInt(edgeOffsetsStart + 4 * (pred + 1));
+    for (int edge = buffer.getInt(edgeOffsetsStart + 4 * pred); edge < last; edge++) {
+      if (buffer.getInt(targetsStart + 4 * edge) == succ)
+        return edge;
+    }
+    return -1;
+  }
+
+  // returns the weight of an edge
+  private double weight(int edge) {
+    return buffer.getDouble(weightsStart + 8 * edge);
+  }
+
+  // returns where a node's name starts within the name bytes
+  private int nameOffset(int id) {
+    return buffer.getInt(nameOffsetsStart + 4 * id);
+  }
+
+  // compares the utf-8 bytes of a node's name with a key, as unsigned bytes
+  private int compareName(int id, byte[] key) {
+    int start = namesStart + nameOffset(id);
+    int length = nameOffset(id + 1) - nameOffset(id);
+    for (int i = 0; i < Math.min(length, key.length); i++) {
+      int difference = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+      if (difference != 0)
+        return difference;
+    }
+    return length - key.length;
+  }
+}
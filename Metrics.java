@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registry of process-wide counters and latency histograms, which can be written out in the
+ * Prometheus text exposition format. Metrics are registered once (typically in static fields), and
+ * are then updated without any locking: every value is kept in LongAdders, so that many request
+ * threads can record into the same metric with little contention.
+ */
+public class Metrics {
+
+  // upper bounds of the histogram buckets in nanoseconds, from 50 microseconds to 10 seconds
+  private static final long[] BUCKET_BOUNDS = {50_000L, 100_000L, 250_000L, 500_000L, 1_000_000L,
+      2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L, 250_000_000L,
+      500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L};
+
+  /**
+   * A monotonically increasing count of events.
+   */
+  public static class Counter {
+    private final LongAdder value = new LongAdder();
+
+    /**
+     * Adds one to this counter.
+     */
+    public void increment() {
+      value.increment();
+    }
+
+    /**
+     * Adds an amount to this counter.
+     *
+     * @param amount the non-negative amount to add
+     */
+    public void add(long amount) {
+      value.add(amount);
+    }
+
+    /**
+     * @return the current count
+     */
+    public long get() {
+      return value.sum();
+    }
+  }
+
+  /**
+   * A histogram of durations, which counts how many fall within each of a fixed set of buckets.
+   */
+  public static class Histogram {
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    private Histogram() {
+      for (int i = 0; i < buckets.length; i++)
+        buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void recordNanos(long nanos) {
+      int bucket = 0;
+      while (bucket < BUCKET_BOUNDS.length && nanos > BUCKET_BOUNDS[bucket])
+        bucket++;
+      buckets[bucket].increment();
+      sumNanos.add(nanos);
+    }
+
+    /**
+     * Records the time elapsed since a start time.
+     *
+     * @param startNanos a value previously returned by System.nanoTime()
+     */
+    public void recordSince(long startNanos) {
+      recordNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the number of durations recorded
+     */
+    public long getCount() {
+      long count = 0;
+      for (LongAdder bucket : buckets)
+        count += bucket.sum();
+      return count;
+    }
+  }
+
+  // all metrics that share one name, along with their help text and type
+  private static class Family {
+    final String help;
+    final String type;
+    final List<String> labels = new ArrayList<>();
+    final List<Object> metrics = new ArrayList<>();
+
+    Family(String help, String type) {
+      this.help = help;
+      this.type = type;
+    }
+  }
+
+  private static final Map<String, Family> families = new LinkedHashMap<>();
+
+  /**
+   * Registers a new counter.
+   *
+   * @param name   the metric name, which should end in _total
+   * @param help   a description of what is counted
+   * @param labels the label set that distinguishes this counter from others with the same name,
+   *               such as endpoint="path", or an empty string for none
+   * @return the new counter
+   */
+  public static synchronized Counter counter(String name, String help, String labels) {
+    Counter counter = new Counter();
+    register(name, help, "counter", labels, counter);
+    return counter;
+  }
+
+  /**
+   * Registers a new latency histogram, which is reported in seconds.
+   *
+   * @param name   the metric name, which should end in _seconds
+   * @param help   a description of what is measured
+   * @param labels the label set that distinguishes this histogram from others with the same name,
+   *               such as stage="search", or an empty string for none
+   * @return the new histogram
+   */
+  public static synchronized Histogram histogram(String name, String help, String labels) {
+    Histogram histogram = new Histogram();
+    register(name, help, "histogram", labels, histogram);
+    return histogram;
+  }
+
+  /**
+   * Writes the current value of every registered metric in the Prometheus text format.
+   *
+   * @param out the destination for the metrics text
+   * @throws IOException if writing fails
+   */
+  public static synchronized void writeTo(Writer out) throws IOException {
+    for (Map.Entry<String, Family> entry : families.entrySet()) {
+      String name = entry.getKey();
+      Family family = entry.getValue();
+      out.write("# HELP " + name + " " + family.help + "\n");
+      out.write("# TYPE " + name + " " + family.type + "\n");
+      for (int i = 0; i < family.metrics.size(); i++) {
+        String labels = family.labels.get(i);
+        Object metric = family.metrics.get(i);
+        if (metric instanceof Counter) {
+          out.write(name + braces(labels) + " " + ((Counter) metric).get() + "\n");
+        } else {
+          writeHistogram(out, name, labels, (Histogram) metric);
+        }
+      }
+    }
+  }
+
+  // writes the cumulative buckets, sum, and count of one histogram
+  private static void writeHistogram(Writer out, String name, String labels, Histogram histogram)
+      throws IOException {
+    String prefix = labels.isEmpty() ? "" : labels + ",";
+    long cumulative = 0;
+    for (int i = 0; i < histogram.buckets.length; i++) {
+      cumulative += histogram.buckets[i].sum();
+      String bound = i < BUCKET_BOUNDS.length ? Double.toString(BUCKET_BOUNDS[i] / 1e9) : "+Inf";
+      out.write(name + "_bucket{" + prefix + "le=\"" + bound + "\"} " + cumulative + "\n");
+    }
+    out.write(name + "_sum" + braces(labels) + " " + histogram.sumNanos.sum() / 1e9 + "\n");
+    out.write(name + "_count" + braces(labels) + " " + cumulative + "\n");
+  }
+
+  // wraps a non-empty label set in braces
+  private static String braces(String labels) {
+    return labels.isEmpty() ? "" : "{" + labels + "}";
+  }
+
+  // adds a metric to the family with its name, creating that family when needed
+  private static void register(String name, String help, String type, String labels,
+      Object metric) {
+    Family family = families.computeIfAbsent(name, n -> new Family(help, type));
+    if (!family.type.equals(type))
+      throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+    if (family.labels.contains(labels))
+      throw new IllegalArgumentException(name + "{" + labels + "} is already registered");
+    family.labels.add(labels);
+    family.metrics.add(metric);
+  }
+}
@@ -0,0 +1,113 @@
+import java.util.List;
+
+/**
+ * The immutable outcome of one shortest path query between two locations. When a path is found,
+ * this holds the locations along that path, the walking time in seconds for each leg between two
+ * consecutive locations, and the total walking time. Otherwise, it holds the reason that no path
+ * could be found.
+ */
+public class PathResult {
+
+  /**
+   * The reasons that a shortest path query can fail.
+   */
+  public enum Failure {
+    NONE, START_NOT_FOUND, END_NOT_FOUND, START_AND_END_NOT_FOUND, NO_PATH
+  }
+
+  private final String start;
+  private final String end;
+  private final List<String> locations;
+  private final List<Double> times;
+  private final double totalTime;
+  private final Failure failure;
+
+  private PathResult(String start, String end, List<String> locations, List<Double> times,
+      double totalTime, Failure failure) {
+    this.start = start;
+    this.end = end;
+    this.locations = List.copyOf(locations);
+    this.times = List.copyOf(times);
+    this.totalTime = totalTime;
+    this.failure = failure;
+  }
+
+  /**
+   * Creates the result for a path that was found.
+   *
+   * @param start     the start location of the path
+   * @param end       the end location of the path
+   * @param locations the locations along the path, from start to end
+   * @param times     the walking time in seconds of each leg along the path
+   * @param totalTime the total walking time in seconds along the path
+   * @return the result describing this path
+   */
+  public static PathResult found(String start, String end, List<String> locations,
+      List<Double> times, double totalTime) {
+    return new PathResult(start, end, locations, times, totalTime, Failure.NONE);
+  }
+
+  /**
+   * Creates the result for a query that did not find a path.
+   *
+   * @param start   the requested start location
+   * @param end     the requested end location
+   * @param failure the reason that no path was found, which must not be NONE
+   * @return the result describing this failure
+   */
+  public static PathResult failed(String start, String end, Failure failure) {
+    if (failure == Failure.NONE)
+      throw new IllegalArgumentException("A failed result needs a failure reason");
+    return new PathResult(start, end, List.of(), List.of(), 0.0, failure);
+  }
+
+  /**
+   * @return the requested start location
+   */
+  public String getStart() {
+    return start;
+  }
+
+  /**
+   * @return the requested end location
+   */
+  public String getEnd() {
+    return end;
+  }
+
+  /**
+   * @return true if a path was found, or false otherwise
+   */
+  public boolean isFound() {
+    return failure == Failure.NONE;
+  }
+
+  /**
+   * @return the unmodifiable list of locations along the path, or an empty list if none was found
+   */
+  public List<String> getLocations() {
+    return locations;
+  }
+
+  /**
+   * @return the unmodifiable list of walking times in seconds for each leg along the path, or an
+   *         empty list if none was found
+   */
+  public List<Double> getTimes() {
+    return times;
+  }
+
+  /**
+   * @return the total walking time in seconds along the path, or 0.0 if none was found
+   */
+  public double getTotalTime() {
+    return totalTime;
+  }
+
+  /**
+   * @return the reason that no path was found, or NONE when a path was found
+   */
+  public Failure getFailure() {
+    return failure;
+  }
+}
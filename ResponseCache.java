@@ -0,0 +1,165 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A bounded, least-recently-used cache of complete response bodies keyed by normalized query
+ * parameters. Each cached body carries a strong ETag so that clients revalidating a page they
+ * already have can be answered with 304 Not Modified. Entries expire after a fixed time to live,
+ * and the whole cache is invalidated whenever the graph behind the responses is reloaded.
+ */
+public class ResponseCache {
+
+  /**
+   * A cached response body along with its entity tag.
+   */
+  public static class Entry {
+    public final byte[] body;
+    public final String etag;
+    private final long expiresAt; // System.nanoTime() after which this entry is stale
+
+    private Entry(byte[] body, long expiresAt) {
+      this.body = body;
+      this.etag = computeETag(body);
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final int capacity;
+  private final long ttlNanos;
+  private final LinkedHashMap<String, Entry> entries;
+  // incremented on every invalidation, so responses computed before it are not cached after it
+  private long generation = 0;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param capacity   the maximum number of responses kept, least recently used are evicted first
+   * @param ttlSeconds the number of seconds a response stays valid after it is stored
+   * @throws IllegalArgumentException if capacity or ttlSeconds are not positive
+   */
+  public ResponseCache(int capacity, long ttlSeconds) {
+    if (capacity < 1 || ttlSeconds < 1)
+      throw new IllegalArgumentException("Cache capacity and time to live must be positive");
+    this.capacity = capacity;
+    this.ttlNanos = ttlSeconds * 1_000_000_000L;
+    // access order makes iteration start at the least recently used entry
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ResponseCache.Entry> eldest) {
+        return size() > ResponseCache.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Returns the unexpired response stored for a key, or null when there is none.
+   *
+   * @param key the normalized query key, see keyFor()
+   * @return the cached entry, or null on a miss
+   */
+  public synchronized Entry get(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null)
+      return null;
+    if (System.nanoTime() - entry.expiresAt > 0) {
+      entries.remove(key);
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Returns the current generation of this cache. Callers should read this before computing a
+   * response, and pass it to put() once that response is ready.
+   *
+   * @return the number of times this cache has been invalidated
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Wraps a response body in a new entry, and stores it unless the cache was invalidated since the
+   * provided generation (in which case the body may describe an outdated graph).
+   *
+   * @param key        the normalized query key, see keyFor()
+   * @param generation the value returned by getGeneration() before the body was computed
+   * @param body       the complete response body
+   * @return the entry for this body, whether or not it was stored
+   */
+  public synchronized Entry put(String key, long generation, byte[] body) {
+    Entry entry = new Entry(body, System.nanoTime() + ttlNanos);
+    if (generation == this.generation)
+      entries.put(key, entry);
+    return entry;
+  }
+
+  /**
+   * Removes every cached response, for use after the backing graph has changed.
+   */
+  public synchronized void invalidateAll() {
+    entries.clear();
+    generation++;
+  }
+
+  /**
+   * Returns the number of responses currently stored.
+   *
+   * @return the number of cached entries
+   */
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  /**
+   * Builds a cache key from query arguments, independent of the order they were provided in.
+   *
+   * @param query the key value pairs parsed from a request's query string
+   * @return the normalized key for these arguments
+   */
+  public static String keyFor(Map<String, String> query) {
+    return new TreeMap<>(query).toString();
+  }
+
+  /**
+   * Checks whether the value of an If-None-Match request header matches an entity tag. As
+   * required for this header, weak validators (W/"...") are compared by their opaque tag only.
+   *
+   * @param ifNoneMatch the header value, or null when the request did not include it
+   * @param etag        the current entity tag of the requested response
+   * @return true if the client's copy is current and 304 Not Modified can be sent
+   */
+  public static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null)
+      return false;
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.equals("*"))
+        return true;
+      if (tag.startsWith("W/"))
+        tag = tag.substring(2);
+      if (tag.equals(etag))
+        return true;
+    }
+    return false;
+  }
+
+  // derives a strong entity tag from a digest of the body's bytes
+  private static String computeETag(byte[] body) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+      byte[] prefix = new byte[12];
+      System.arraycopy(digest, 0, prefix, 0, prefix.length);
+      return "\"" + new String(Base64.getUrlEncoder().withoutPadding().encode(prefix),
+          StandardCharsets.US_ASCII) + "\"";
+    } catch (NoSuchAlgorithmException e) {
+      // every java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,173 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The shortest paths found by one single-source search. Each node that the search settled is
+ * stored along with the cost of its shortest path from the source, the number of edges (hops) on
+ * that path, the node before it along that path, and the edge that connects them. Paths to any
+ * settled node can then be read back without searching again, so one tree can answer any number of
+ * one-to-all questions about its source.
+ *
+ * Nodes are stored in the order they were settled, which is also the order of non-decreasing cost
+ * from the source.
+ */
+public class ShortestPathTree<NodeType, EdgeType extends Number> {
+  private final ArrayList<NodeType> nodes = new ArrayList<>();
+  private final ArrayList<EdgeType> edges = new ArrayList<>(); // edge from each node's predecessor
+  private int[] predecessors = new int[16]; // settle index of each node's predecessor, or -1
+  private double[] costs = new double[16];
+  private int[] hops = new int[16]; // number of edges on each node's shortest path
+  private final HashMap<NodeType, Integer> indexes = new HashMap<>();
+
+  /**
+   * Creates a tree that contains only its source, with a cost of zero.
+   *
+   * @param source the data item in the node that every path in this tree starts from
+   */
+  public ShortestPathTree(NodeType source) {
+    add(source, -1, null, 0.0);
+  }
+
+  /**
+   * Adds a settled node to this tree. Nodes must be added in order of non-decreasing cost, and
+   * after their predecessor.
+   *
+   * @param node        the data item in the settled node
+   * @param predecessor the data item in the node before it along its shortest path
+   * @param edge        the data from the edge between predecessor and node
+   * @param cost        the total cost of the shortest path from the source to node
+   * @throws IllegalArgumentException if node is already in this tree
+   * @throws NoSuchElementException   if predecessor is not yet in this tree
+   */
+  public void settle(NodeType node, NodeType predecessor, EdgeType edge, double cost) {
+    if (indexes.containsKey(node))
+      throw new IllegalArgumentException("Node already settled: " + node);
+    add(node, indexOf(predecessor), edge, cost);
+  }
+
+  /**
+   * @return the data item in the source node of this tree
+   */
+  public NodeType getSource() {
+    return nodes.get(0);
+  }
+
+  /**
+   * @return the number of nodes in this tree, including its source
+   */
+  public int size() {
+    return nodes.size();
+  }
+
+  /**
+   * Checks whether a node was settled, so that a shortest path to it is known.
+   *
+   * @param node the data item to check for
+   * @return true if node is in this tree, or false otherwise
+   */
+  public boolean contains(NodeType node) {
+    return indexes.containsKey(node);
+  }
+
+  /**
+   * Returns the cost of the shortest path from the source to a node.
+   *
+   * @param node the data item in the destination node
+   * @return the sum of edge weights along that shortest path
+   * @throws NoSuchElementException if node is not in this tree
+   */
+  public double costTo(NodeType node) {
+    return costs[indexOf(node)];
+  }
+
+  /**
+   * Returns the number of edges along the shortest path from the source to a node.
+   *
+   * @param node the data item in the destination node
+   * @return the number of edges on that shortest path, which is zero for the source
+   * @throws NoSuchElementException if node is not in this tree
+   */
+  public int hopsTo(NodeType node) {
+    return hops[indexOf(node)];
+  }
+
+  /**
+   * Returns the node before a node along its shortest path from the source.
+   *
+   * @param node the data item in the destination node
+   * @return the data item in the node before it, or null if node is the source
+   * @throws NoSuchElementException if node is not in this tree
+   */
+  public NodeType predecessorOf(NodeType node) {
+    int predecessor = predecessors[indexOf(node)];
+    return predecessor < 0 ? null : nodes.get(predecessor);
+  }
+
+  /**
+   * @return the data items of every node in this tree, in the order they were settled (which
+   *         begins with the source)
+   */
+  public List<NodeType> getNodes() {
+    return Collections.unmodifiableList(nodes);
+  }
+
+  /**
+   * Returns the node data along the shortest path from the source to a node.
+   *
+   * @param node the data item in the destination node
+   * @return list of node data from the source through node
+   * @throws NoSuchElementException if node is not in this tree
+   */
+  public List<NodeType> pathTo(NodeType node) {
+    int index = indexOf(node);
+    List<NodeType> path = new ArrayList<>(hops[index] + 1);
+    for (int i = index; i >= 0; i = predecessors[i])
+      path.add(nodes.get(i));
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * Returns the data from each edge along the shortest path from the source to a node.
+   *
+   * @param node the data item in the destination node
+   * @return list of edge data, in order from the source through node
+   * @throws NoSuchElementException if node is not in this tree
+   */
+  public List<EdgeType> edgesTo(NodeType node) {
+    int index = indexOf(node);
+    List<EdgeType> path = new ArrayList<>(hops[index]);
+    for (int i = index; predecessors[i] >= 0; i = predecessors[i])
+      path.add(edges.get(i));
+    Collections.reverse(path);
+    return path;
+  }
+
+  // returns the settle index of a node, or throws when it is not in this tree
+  private int indexOf(NodeType node) {
+    Integer index = indexes.get(node);
+    if (index == null)
+      throw new NoSuchElementException("No shortest path found to " + node);
+    return index;
+  }
+
+  // appends a node to the end of the parallel arrays that make up this tree
+  private void add(NodeType node, int predecessor, EdgeType edge, double cost) {
+    int index = nodes.size();
+    if (index == costs.length) {
+      predecessors = Arrays.copyOf(predecessors, index * 2);
+      costs = Arrays.copyOf(costs, index * 2);
+      hops = Arrays.copyOf(hops, index * 2);
+    }
+    nodes.add(node);
+    edges.add(edge);
+    predecessors[index] = predecessor;
+    costs[index] = cost;
+    hops[index] = predecessor < 0 ? 0 : hops[predecessor] + 1;
+    indexes.put(node, index);
+  }
+}
@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A BackendInterface that forwards every call to another backend, while recording how long each
+ * call takes: loading graph data in the parse stage histogram, and all path queries in the search
+ * stage histogram. The time spent searching is also totalled for each thread, so that callers can
+ * exclude it from the time they measure around code that calls into this backend.
+ */
+public class TimedBackend implements BackendInterface {
+
+  private static final Metrics.Histogram PARSE_TIME = Metrics.histogram(
+      "campus_stage_duration_seconds", "Time spent in each stage of answering requests.",
+      "stage=\"parse\"");
+  private static final Metrics.Histogram SEARCH_TIME = Metrics.histogram(
+      "campus_stage_duration_seconds", "Time spent in each stage of answering requests.",
+      "stage=\"search\"");
+
+  // total nanoseconds that each thread has spent in search calls
+  private static final ThreadLocal<long[]> threadSearchNanos =
+      ThreadLocal.withInitial(() -> new long[1]);
+
+  private final BackendInterface backend;
+
+  /**
+   * Creates a timed view of another backend.
+   *
+   * @param backend the backend that every call is forwarded to
+   */
+  public TimedBackend(BackendInterface backend) {
+    this.backend = backend;
+  }
+
+  /**
+   * Returns the total time that the calling thread has spent in search calls on any TimedBackend.
+   * Subtracting two of these values gives the search time between them.
+   *
+   * @return the calling thread's total search time in nanoseconds
+   */
+  public static long getThreadSearchNanos() {
+    return threadSearchNanos.get()[0];
+  }
+
+  @Override
+  public void loadGraphData(String filename) throws IOException {
+    long start = System.nanoTime();
+    try {
+      backend.loadGraphData(filename);
+    } finally {
+      PARSE_TIME.recordSince(start);
+    }
+  }
+
+  @Override
+  public List<String> getListOfAllLocations() {
+    long start = System.nanoTime();
+    try {
+      return backend.getListOfAllLocations();
+    } finally {
+      recordSearch(start);
+    }
+  }
+
+  @Override
+  public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
+    long start = System.nanoTime();
+    try {
+      return backend.findLocationsOnShortestPath(startLocation, endLocation);
+    } finally {
+      recordSearch(start);
+    }
+  }
+
+  @Override
+  public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
+    long start = System.nanoTime();
+    try {
+      return backend.findTimesOnShortestPath(startLocation, endLocation);
+    } finally {
+      recordSearch(start);
+    }
+  }
+
+  @Override
+  public List<String> getLongestLocationListFrom(String startLocation)
+      throws NoSuchElementException {
+    long start = System.nanoTime();
+    try {
+      return backend.getLongestLocationListFrom(startLocation);
+    } finally {
+      recordSearch(start);
+    }
+  }
+
+  @Override
+  public PathResult findShortestPath(String startLocation, String endLocation) {
+    long start = System.nanoTime();
+    try {
+      return backend.findShortestPath(startLocation, endLocation);
+    } finally {
+      recordSearch(start);
+    }
+  }
+
+  /**
+   * Forwards a batch query. Since its results are produced lazily, the time recorded for it is the
+   * time spent starting the batch plus the time spent waiting for each of its results.
+   */
+  @Override
+  public Stream<PathResult> findShortestPaths(List<String> starts, List<String> ends) {
+    long start = System.nanoTime();
+    Iterator<PathResult> results = backend.findShortestPaths(starts, ends).iterator();
+    long[] elapsed = {System.nanoTime() - start};
+    addThreadSearchNanos(elapsed[0]);
+    Iterator<PathResult> timed = new Iterator<>() {
+      private boolean recorded = false;
+
+      @Override
+      public boolean hasNext() {
+        boolean hasNext = results.hasNext();
+        if (!hasNext && !recorded) {
+          recorded = true;
+          SEARCH_TIME.recordNanos(elapsed[0]);
+        }
+        return hasNext;
+      }
+
+      @Override
+      public PathResult next() {
+        long waitStart = System.nanoTime();
+        try {
+          return results.next();
+        } finally {
+          long waited = System.nanoTime() - waitStart;
+          elapsed[0] += waited;
+          addThreadSearchNanos(waited);
+        }
+      }
+    };
+    return StreamSupport.stream(Spliterators.spliterator(timed, starts.size(),
+        Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  @Override
+  public String resolveLocation(String name) {
+    long start = System.nanoTime();
+    try {
+      return backend.resolveLocation(name);
+    } finally {
+      recordSearch(start);
+    }
+  }
+
+  @Override
+  public List<String> suggestLocations(String query, int limit) {
+    long start = System.nanoTime();
+    try {
+      return backend.suggestLocations(query, limit);
+    } finally {
+      recordSearch(start);
+    }
+  }
+
+  @Override
+  public List<PathResult> findNearestLocations(String startLocation,
+      Collection<String> candidates, int k) {
+    long start = System.nanoTime();
+    try {
+      return backend.findNearestLocations(startLocation, candidates, k);
+    } finally {
+      recordSearch(start);
+    }
+  }
+
+  @Override
+  public Map<String, Double> findLocationsWithin(String startLocation, double seconds) {
+    long start = System.nanoTime();
+    try {
+      return backend.findLocationsWithin(startLocation, seconds);
+    } finally {
+      recordSearch(start);
+    }
+  }
+
+  // records one search call that began at start
+  private static void recordSearch(long start) {
+    long elapsed = System.nanoTime() - start;
+    SEARCH_TIME.recordNanos(elapsed);
+    addThreadSearchNanos(elapsed);
+  }
+
+  // adds to the calling thread's total search time
+  private static void addThreadSearchNanos(long nanos) {
+    threadSearchNanos.get()[0] += nanos;
+  }
+}
@@ -5,12 +5,21 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.File;
-import java.util.Scanner;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
 /**
@@ -26,13 +35,134 @@ import java.util.stream.Stream;
  *     compile WebApp in that location
  *     there is no need to run your sever, the provided index.cgi handles this 
  * Then visit through browser via https://cs400-web.cs.wisc.edu/CS_LOGIN/
+ *
+ * Optional server flags may follow the port number:
+ *     --executor=pool|virtual|dispatcher  how request handlers are run
+ *         (a fixed thread pool by default, a virtual thread per request, or
+ *         all requests on the server's single dispatcher thread)
+ *     --threads=N   number of threads in the pool (default: one per core)
+ *     --max-queued=N  requests that may wait for a thread in the pool, past
+ *         which requests are answered with 503 (default 64)
+ *     --backlog=N   maximum number of queued incoming connections (default 64)
+ *     --cache-size=N     number of responses kept in the LRU response cache
+ *         (default 256, or 0 to disable caching)
+ *     --cache-ttl=SECS   how long a cached response remains valid (default 300)
+ *     --access-log=PATH  file that one line per request is appended to
+ *         (default access.log, or none to disable the access log)
+ *     --access-log-max-bytes=N  size at which the access log is rotated
+ *         (default 10485760), keeping --access-log-files=N old files (5)
+ *     --debug=true  also print each request and its complete html to stdout
+ *     --max-path=N, --max-longest=N, --max-batch=N  number of shortest path,
+ *         longest location list, and batch requests that may run at once
+ *         (default: one per pool thread, 1 per 2 pool threads, and 1 per 2
+ *         pool threads)
+ *     --max-waiting=N   requests of each kind that may wait for a turn (32)
+ *     --max-wait-ms=N   how long they may wait before being shed (100)
+ *         Shed requests are answered with 503 Service Unavailable.
+ *         Requests are admitted on the server's dispatcher thread before
+ *         they are handed to the pool, and wait without holding a thread.
+ *     --graph=PATH  the dot file, or binary snapshot compiled from one with
+ *         java GraphSnapshot campus.dot campus.graph, to load the campus
+ *         graph from (default ./campus.dot)
+ *     --load-chunks=N  split a dot file into N chunks that are read in
+ *         parallel (default 1); only for files with one statement per line
+ *     --all-pairs-max-nodes=N  precompute the shortest paths between every
+ *         pair of locations in graphs with at most N locations (default
+ *         1024, which takes at most 16 MiB), or 0 to always search
+ *     --search=bidirectional  search for a path from both of its ends at
+ *         once, which settles fewer locations in large graphs (default
+ *         forward); between paths that tie, either mode may pick another
+ *     --landmarks=N  guide path searches with the costs to and from N landmark
+ *         locations, found when the graph is loaded (default 0, for none);
+ *         only used when all-pairs shortest paths are not precomputed
+ *     --hierarchy=PATH  answer path queries on graphs too large for all-pairs
+ *         shortest paths from a contraction hierarchy, which is saved to PATH
+ *         once it is built and read back from there when the same graph is
+ *         loaded again (default none); ignored, with a message, for binary
+ *         snapshots, which are always searched directly
+ *     --reload=false  stop watching the graph file, which is otherwise
+ *         reloaded (without interrupting requests) whenever it changes
+ *
+ * Besides html pages, the server answers JSON requests under /api/ (see
+ * JsonApi for the available endpoints), and reports latency histograms and
+ * counters in the Prometheus text format under /metrics.
  */
 public class WebApp {
+
+    // the file that the campus graph is loaded from: a dot file, or a binary
+    // snapshot compiled from one by GraphSnapshot
+    private static String graphFile = "./campus.dot";
+    // the number of chunks that a dot file is split into and read in parallel
+    private static int loadChunks = 1;
+    // the most locations that all-pairs shortest paths are precomputed for
+    private static int allPairsMaxNodes = 1024;
+    // whether path searches start from both ends of the path at once
+    private static boolean bidirectional = false;
+    // the number of landmarks that guide path searches, or 0 for none
+    private static int landmarkCount = 0;
+    // the file that contraction hierarchies are saved to, or null for none
+    private static String hierarchyFile = null;
+    // the campus graph is parsed once and then shared (read-only) by every
+    // request, instead of being reloaded from campus.dot for each one.  When
+    // that file changes, a new snapshot is built and swapped in here, while
+    // requests already in progress finish with the one they started with.
+    private static final AtomicReference<Snapshot> snapshot =
+	new AtomicReference<>();
+    // template.html is likewise read and split around its placeholders once
+    private static volatile HtmlTemplate template = null;
+    // complete responses for recent queries, or null when caching is disabled
+    private static ResponseCache cache = null;
+
+    // receives one structured line per request, or null when disabled
+    private static AccessLog accessLog = null;
+    // when true, each request and its html are also printed to stdout
+    private static boolean debug = false;
+
+    // limits on the requests of each kind that run at once, by kind
+    private static final Map<String,AdmissionControl> admission = new HashMap<>();
+    // runs the handlers of admitted requests
+    private static Executor workers = Runnable::run;
+    // answers a request that was shed, and logs it like any other
+    private static final HttpHandler SHED = logged(WebApp::shedHandler);
+
+    // details recorded while handling the request on each thread, which are
+    // included in that request's access log line
+    private static class RequestDetails {
+	long renderNanos;
+	long writeNanos;
+	String cache;
+    }
+    private static final ThreadLocal<RequestDetails> requestDetails =
+	ThreadLocal.withInitial(RequestDetails::new);
+
+    // latency of the stages that WebApp itself performs (parse and search
+    // are recorded by TimedBackend)
+    private static final Metrics.Histogram RENDER_TIME = Metrics.histogram(
+	"campus_stage_duration_seconds",
+	"Time spent in each stage of answering requests.","stage=\"render\"");
+    private static final Metrics.Histogram WRITE_TIME = Metrics.histogram(
+	"campus_stage_duration_seconds",
+	"Time spent in each stage of answering requests.","stage=\"write\"");
+    private static final Metrics.Counter RELOAD_SUCCESSES = Metrics.counter(
+	"campus_graph_reloads_total",
+	"Attempts to reload the campus graph after its file changed.",
+	"result=\"success\"");
+    private static final Metrics.Counter RELOAD_FAILURES = Metrics.counter(
+	"campus_graph_reloads_total",
+	"Attempts to reload the campus graph after its file changed.",
+	"result=\"failure\"");
+    private static final Metrics.Counter CACHE_HITS = Metrics.counter(
+	"campus_cache_requests_total",
+	"Page requests looked up in the response cache.","result=\"hit\"");
+    private static final Metrics.Counter CACHE_MISSES = Metrics.counter(
+	"campus_cache_requests_total",
+	"Page requests looked up in the response cache.","result=\"miss\"");
+
     public static void main(String[] args) throws IOException {
 	// expects the port number as a command line argument to this program
 	// or if a non-numeric argument is passed treat this like the query
 	// part of a requst URI and display response through standard out
-	if(args.length != 1) {
+	if(args.length < 1) {
 	    throw new IllegalArgumentException("You must pass a command line" +
 					       " argument representing the port that this servers should be" +
 					       " bound to when running this program.  Or a Query string.");
@@ -50,46 +180,317 @@ public class WebApp {
 				
 	// configure and start server on this port, responding in this way
 	InetSocketAddress address = new InetSocketAddress("0.0.0.0", portNumber);
-	HttpServer server = HttpServer.create(address,8);
+	Map<String,String> options = parseOptions(args);
+	int backlog = Integer.parseInt(options.getOrDefault("backlog","64"));
+	int threads = Integer.parseInt(options.getOrDefault("threads",
+		String.valueOf(Runtime.getRuntime().availableProcessors())));
+	String mode = options.getOrDefault("executor","pool");
+	int cacheSize = Integer.parseInt(options.getOrDefault("cache-size","256"));
+	long cacheTTL = Long.parseLong(options.getOrDefault("cache-ttl","300"));
+	if(cacheSize > 0) cache = new ResponseCache(cacheSize,cacheTTL);
+	debug = Boolean.parseBoolean(options.getOrDefault("debug","false"));
+	graphFile = options.getOrDefault("graph",graphFile);
+	loadChunks = Integer.parseInt(options.getOrDefault("load-chunks","1"));
+	allPairsMaxNodes = Integer.parseInt(
+	    options.getOrDefault("all-pairs-max-nodes","1024"));
+	bidirectional = options.getOrDefault("search","forward")
+	    .equals("bidirectional");
+	landmarkCount = Integer.parseInt(options.getOrDefault("landmarks","0"));
+	hierarchyFile = options.get("hierarchy");
+	String accessLogFile = options.getOrDefault("access-log","access.log");
+	if(!accessLogFile.equals("none")) {
+	    accessLog = new AccessLog(accessLogFile,
+		Long.parseLong(options.getOrDefault("access-log-max-bytes","10485760")),
+		Integer.parseInt(options.getOrDefault("access-log-files","5")),8192);
+	    // write any lines still buffered when the server is stopped
+	    AccessLog log = accessLog;
+	    Runtime.getRuntime().addShutdownHook(new Thread(log::close));
+	}
+	int maxQueued = Integer.parseInt(options.getOrDefault("max-queued","64"));
+	int maxWaiting = Integer.parseInt(options.getOrDefault("max-waiting","32"));
+	long maxWait = Long.parseLong(options.getOrDefault("max-wait-ms","100"));
+	// path requests may use every thread, while the expensive kinds may use
+	// half of them, so that they can never hold up every path request
+	for(String kind : new String[] {"path","longest","batch"}) {
+	    int defaultMax = kind.equals("path") ? threads : Math.max(1,threads/2);
+	    admission.put(kind,new AdmissionControl(kind,
+		Integer.parseInt(options.getOrDefault("max-"+kind,
+						      String.valueOf(defaultMax))),
+		maxWaiting,maxWait));
+	}
+	// the server's own dispatcher thread admits each request, and then hands
+	// it to the workers
+	workers = createExecutor(mode,threads,maxQueued);
+	HttpServer server = HttpServer.create(address,backlog);
 	HttpContext context = server.createContext("/");
-	context.setHandler( WebApp::requestHandler );
-	System.out.println("Starting Campus Navigator Server...");
+	context.setHandler( dispatched(logged(WebApp::requestHandler)) );
+	server.createContext("/api/").setHandler( dispatched(logged(WebApp::apiHandler)) );
+	// metrics are answered on the dispatcher thread, so that they can still
+	// be read while the workers are saturated
+	server.createContext("/metrics").setHandler( logged(WebApp::metricsHandler) );
+	// load the graph and template before accepting requests, so that none
+	// of them pay for it
+	getSnapshot();
+	getTemplate();
+	if(Boolean.parseBoolean(options.getOrDefault("reload","true")))
+	    new GraphReloader(graphFile,WebApp::reloadSnapshot);
+	System.out.println("Starting Campus Navigator Server (executor=" +
+			   mode + ", backlog=" + backlog + ")...");
 	server.start();
     }
 
+    // reads the "--name=value" options that follow the port number
+    private static Map<String,String> parseOptions(String[] args) {
+	HashMap<String,String> options = new HashMap<>();
+	for(int i = 1; i < args.length; i++) {
+	    if(!args[i].startsWith("--") || !args[i].contains("="))
+		throw new IllegalArgumentException("Unable to parse option: " +
+						   args[i] + " (expected --name=value)");
+	    int split = args[i].indexOf('=');
+	    options.put(args[i].substring(2,split),args[i].substring(split+1));
+	}
+	return options;
+    }
+
+    // creates the executor that runs request handlers in the given mode,
+    // which runs them on the server's own dispatcher thread for "dispatcher"
+    private static Executor createExecutor(String mode, int threads,
+					   int maxQueued) {
+	switch(mode) {
+	case "dispatcher":
+	    return Runnable::run;
+	case "pool":
+	    if(threads < 1 || maxQueued < 1)
+		throw new IllegalArgumentException("--threads and --max-queued" +
+						   " must be positive");
+	    // a full queue rejects requests, which are then shed
+	    return new ThreadPoolExecutor(threads,threads,0L,TimeUnit.MILLISECONDS,
+					  new ArrayBlockingQueue<>(maxQueued));
+	case "virtual":
+	    // virtual threads are only available on newer jdks (21+), so look
+	    // the factory up reflectively and fall back to a cached pool
+	    try {
+		return (Executor) Executors.class
+		    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+	    } catch(ReflectiveOperationException e) {
+		System.out.println("Virtual threads are not supported by this" +
+				   " JVM, using a cached thread pool instead.");
+		return Executors.newCachedThreadPool();
+	    }
+	default:
+	    throw new IllegalArgumentException("Unknown executor mode: " + mode +
+					       " (expected pool, virtual, or dispatcher)");
+	}
+    }
+
+    // wraps a request handler so that each request it handles is timed and
+    // then described by one line in the access log
+    private static HttpHandler logged(HttpHandler handler) {
+	return exchange -> {
+	    long start = System.nanoTime();
+	    long searchStart = TimedBackend.getThreadSearchNanos();
+	    RequestDetails details = requestDetails.get();
+	    details.renderNanos = details.writeNanos = 0;
+	    details.cache = null;
+	    // count the bytes of each response body as they are written
+	    long[] bytes = new long[1];
+	    exchange.setStreams(null,new FilterOutputStream(exchange.getResponseBody()) {
+		    @Override
+		    public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b,off,len);
+			bytes[0] += len;
+		    }
+		    @Override
+		    public void write(int b) throws IOException {
+			out.write(b);
+			bytes[0]++;
+		    }
+		});
+	    try {
+		handler.handle(exchange);
+	    } finally {
+		if(accessLog != null)
+		    accessLog.log(formatAccessLine(exchange,bytes[0],
+			System.nanoTime() - start,
+			TimedBackend.getThreadSearchNanos() - searchStart,details));
+	    }
+	};
+    }
+
+    // wraps a request handler so that it runs on the workers once its request
+    // is admitted: the expensive kinds of requests are limited by their
+    // admission control, and any request is shed with a 503 when its limit or
+    // the workers' queue is saturated.  This runs on the server's dispatcher
+    // thread and never waits, so requests are admitted before they take up a
+    // worker or a place in its queue.
+    private static HttpHandler dispatched(HttpHandler handler) {
+	return exchange -> {
+	    Runnable task = () -> {
+		try {
+		    handler.handle(exchange);
+		} catch(IOException e) {
+		    System.out.println("Exception Thrown: "+e.toString());
+		    exchange.close();
+		}
+	    };
+	    Runnable onShed = () -> {
+		try {
+		    SHED.handle(exchange);
+		} catch(IOException e) {
+		    exchange.close();
+		}
+	    };
+	    AdmissionControl limits = admission.get(requestKind(exchange));
+	    if(limits != null) {
+		limits.submit(workers,task,onShed);
+		return;
+	    }
+	    try {
+		workers.execute(task);
+	    } catch(RejectedExecutionException e) {
+		onShed.run();
+	    }
+	};
+    }
+
+    // answers a request that was shed, asking the client to retry it shortly
+    private static void shedHandler(HttpExchange exchange) throws IOException {
+	exchange.getResponseHeaders().set("Retry-After","1");
+	exchange.sendResponseHeaders(503,-1);
+	exchange.close();
+    }
+
+    // classifies a request by the kind of computation it asks for: "path",
+    // "longest", "batch", or "other" for requests that are always cheap
+    private static String requestKind(HttpExchange exchange) {
+	String path = exchange.getRequestURI().getPath();
+	if(path.equals("/api/batch")) return "batch";
+	if(path.equals("/api/path") || path.equals("/api/nearest")) return "path";
+	if(path.equals("/api/longest") || path.equals("/api/within"))
+	    return "longest";
+	if(path.startsWith("/api/")) return "other";
+	String query = exchange.getRequestURI().getQuery();
+	if(query == null) return "other";
+	Map<String,String> args;
+	try {
+	    args = parseQuery(query);
+	} catch(IllegalArgumentException e) {
+	    return "other"; // the handler reports malformed queries itself
+	}
+	if(args.containsKey("start") && args.containsKey("end")) return "path";
+	if(args.containsKey("from")) return "longest";
+	return "other";
+    }
+
+    // describes one completed request as a single line of JSON
+    private static String formatAccessLine(HttpExchange exchange, long bytes,
+					   long totalNanos, long searchNanos,
+					   RequestDetails details) {
+	try {
+	    StringWriter line = new StringWriter();
+	    JsonWriter json = new JsonWriter(line);
+	    json.beginObject();
+	    json.name("time").value(Instant.now().toString());
+	    json.name("remote").value(exchange.getRemoteAddress().getAddress().getHostAddress());
+	    json.name("method").value(exchange.getRequestMethod());
+	    json.name("path").value(exchange.getRequestURI().getPath());
+	    json.name("query").value(exchange.getRequestURI().getQuery());
+	    json.name("status").value((long)exchange.getResponseCode());
+	    json.name("bytes").value(bytes);
+	    if(details.cache != null) json.name("cache").value(details.cache);
+	    json.name("ms").beginObject();
+	    json.name("search").value(searchNanos / 1e6);
+	    json.name("render").value(details.renderNanos / 1e6);
+	    json.name("write").value(details.writeNanos / 1e6);
+	    json.name("total").value(totalNanos / 1e6);
+	    json.endObject();
+	    json.endObject();
+	    return line.toString();
+	} catch(IOException e) {
+	    // a StringWriter never throws
+	    throw new UncheckedIOException(e);
+	}
+    }
+
     // http request handler handler for the context "/"
     public static void requestHandler(HttpExchange exchange) {
-	System.out.println("REQUEST HANDLER TRIGGERED");
+	if(debug) System.out.println("REQUEST HANDLER TRIGGERED");
+	RequestDetails details = requestDetails.get();
 	try {
 	    // extract the query (part of URI after?) part of URI
 	    String query = exchange.getRequestURI().getQuery();	    
-	    System.out.println("Received Request with query: " + query);
+	    if(debug) System.out.println("Received Request with query: " + query);
 	    // extract argument key-value pairs from request query
 	    Map<String,String> keyValuePairs = parseQuery(
 							  exchange.getRequestURI().getQuery());
-	    System.out.println("Query includes args: "+keyValuePairs);
+	    if(debug) System.out.println("Query includes args: "+keyValuePairs);
 	    
-	    // create backend and frontend objects to respond to this request
-	    FrontendInterface frontend = createWorkingFrontend("./campus.dot");
-	    // compute answer to user's requested problem based on query args:
-	    String response = generateResponseHTML(keyValuePairs,frontend);
-	    System.out.println("RESPONSE CONTENT: " + response);
-            // generate HTML prompts for user for make next requests
-	    String prompts = generatePromptHTML(frontend);
-	    System.out.println("PROMPTS CONTENT: " + prompts);
-	    // compose response and prompts into a complete html template
-	    String html = composeHTML(response,prompts);
-		
-	    // complete exchange response to send this html back to requester
-	    System.out.println("---- HTML START ----");
-	    System.out.println(html);
-	    System.out.println("---- HTML END ----");
-
-	    byte[] bytes = html.getBytes();
+	    // answer from the cache when this query was recently computed
+	    String cacheKey = ResponseCache.keyFor(keyValuePairs);
+	    ResponseCache.Entry cached = cache == null ? null : cache.get(cacheKey);
+	    byte[] bytes;
+	    String etag;
+	    if(cached != null) {
+		if(debug) System.out.println("Serving cached response");
+		details.cache = "hit";
+		CACHE_HITS.increment();
+		bytes = cached.body;
+		etag = cached.etag;
+	    } else {
+		if(cache != null) {
+		    details.cache = "miss";
+		    CACHE_MISSES.increment();
+		}
+		long generation = cache == null ? 0 : cache.getGeneration();
+		// every request shares the same backend and frontend objects
+		FrontendInterface frontend = getSnapshot().frontend;
+		// time spent rendering excludes the searches made along the way
+		long renderStart = System.nanoTime();
+		long searchStart = TimedBackend.getThreadSearchNanos();
+		// compute answer to user's requested problem based on query args:
+		String response = generateResponseHTML(keyValuePairs,frontend);
+		// generate HTML prompts for user for make next requests
+		String prompts = generatePromptHTML(frontend);
+		// compose response and prompts into a complete html template
+		bytes = composeHTML(response,prompts);
+		details.renderNanos = System.nanoTime() - renderStart -
+		    (TimedBackend.getThreadSearchNanos() - searchStart);
+		RENDER_TIME.recordNanos(details.renderNanos);
+
+		if(debug) {
+		    System.out.println("RESPONSE CONTENT: " + response);
+		    System.out.println("PROMPTS CONTENT: " + prompts);
+		    System.out.println("---- HTML START ----");
+		    System.out.write(bytes);
+		    System.out.println();
+		    System.out.println("---- HTML END ----");
+		}
+		etag = cache == null ? null : cache.put(cacheKey,generation,bytes).etag;
+	    }
+
+	    // complete exchange response to send this html back to requester,
+	    // or just confirm that the requester's copy is still current
+	    long writeStart = System.nanoTime();
+	    if(etag != null) {
+		exchange.getResponseHeaders().set("ETag",etag);
+		exchange.getResponseHeaders().set("Cache-Control","no-cache");
+	    }
+	    if(etag != null && ResponseCache.matches(
+		   exchange.getRequestHeaders().getFirst("If-None-Match"),etag)) {
+		exchange.sendResponseHeaders(304,-1);
+		exchange.close();
+		details.writeNanos = System.nanoTime() - writeStart;
+		WRITE_TIME.recordNanos(details.writeNanos);
+		return;
+	    }
+	    exchange.getResponseHeaders().set("Content-Type",
+					      "text/html; charset=utf-8");
 	    exchange.sendResponseHeaders(200,bytes.length);
 	    OutputStream out = exchange.getResponseBody();
 	    out.write(bytes);
 	    out.close();
+	    details.writeNanos = System.nanoTime() - writeStart;
+	    WRITE_TIME.recordNanos(details.writeNanos);
 	    
 	    // unless something goes wrong, in which case report problem
 	} catch (Exception e) {
@@ -101,8 +502,40 @@ public class WebApp {
 	}
     }
 
+    // http request handler for the JSON endpoints under "/api/"
+    public static void apiHandler(HttpExchange exchange) {
+	try {
+	    JsonApi.handle(exchange,getSnapshot().backend);
+	} catch (Exception e) {
+	    System.out.println("Exception Thrown: "+e.toString());
+	    e.printStackTrace();
+	    // attempt to send 500 Server Error Response to client
+	    try { exchange.sendResponseHeaders(500,-1); }
+	    catch(IOException i){} // do nothing when this fails
+	}
+	exchange.close();
+    }
+
+    // http request handler that reports all metrics for "/metrics"
+    public static void metricsHandler(HttpExchange exchange) {
+	try {
+	    StringWriter text = new StringWriter();
+	    Metrics.writeTo(text);
+	    byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+	    exchange.getResponseHeaders().set("Content-Type",
+					      "text/plain; version=0.0.4; charset=utf-8");
+	    exchange.sendResponseHeaders(200,bytes.length);
+	    OutputStream out = exchange.getResponseBody();
+	    out.write(bytes);
+	    out.close();
+	} catch (IOException e) {
+	    System.out.println("Exception Thrown: "+e.toString());
+	    exchange.close();
+	}
+    }
+
     // reads key value pairs from the query string of a URI into a map
-    private static Map<String,String> parseQuery(String query) {
+    static Map<String,String> parseQuery(String query) {
 	HashMap<String,String> map = new HashMap<>();
 	if(query != null && query.contains("="))
 	    Stream.of(query.split("&")).forEach(arg -> {
@@ -116,13 +549,87 @@ public class WebApp {
 	return map;
     }
 
+    // the graph, backend, and frontend built together from one load of the
+    // graph data, which are never modified after being shared
+    private static class Snapshot {
+	final GraphADT<String,Double> graph;
+	final BackendInterface backend;
+	final FrontendInterface frontend;
+
+	Snapshot(GraphADT<String,Double> graph, BackendInterface backend,
+		 FrontendInterface frontend) {
+	    this.graph = graph;
+	    this.backend = backend;
+	    this.frontend = frontend;
+	}
+    }
+
     // creates a working Frontend, Backend, DijkstraGraph, and HashtableMap
-    private static FrontendInterface createWorkingFrontend(String filename) throws IOException {
-	GraphADT<String,Double> graph = new DijkstraGraph<>();
-	BackendInterface backend = new Backend(graph);
+    private static Snapshot createSnapshot(String filename) throws IOException {
+	DijkstraGraph<String,Double> graph = new DijkstraGraph<>();
+	graph.setBidirectional(bidirectional);
+	Backend loader = new Backend(graph,loadChunks,allPairsMaxNodes,
+				     hierarchyFile);
+	BackendInterface backend = new TimedBackend(loader);
 	backend.loadGraphData(filename);			
-	FrontendInterface frontend = new Frontend(backend);
-	return frontend;
+	// the requested file is already loaded, so keep the frontend from
+	// loading campus.dot over it
+	FrontendInterface frontend = new Frontend(backend,false);
+	if(loader.getGraph() instanceof AllPairsGraph)
+	    System.out.println("Precomputed all-pairs shortest paths for " +
+		loader.getGraph().getNodeCount() + " locations (" +
+		((AllPairsGraph<?,?>)loader.getGraph()).getMemoryBytes()/1024 +
+		" KiB)");
+	if(loader.getGraph() instanceof ContractionHierarchyGraph)
+	    System.out.println("Using a contraction hierarchy with " +
+		((ContractionHierarchyGraph<?,?>)loader.getGraph())
+		.getShortcutCount() + " shortcuts (" + hierarchyFile + ")");
+	// landmarks only help a DijkstraGraph that answers queries by searching
+	if(landmarkCount > 0 && loader.getGraph() == graph) {
+	    long start = System.nanoTime();
+	    int chosen = graph.computeLandmarks(landmarkCount);
+	    System.out.println("Chose " + chosen + " landmarks in " +
+		(System.nanoTime() - start)/1000000 + " ms");
+	}
+	// a snapshot file is mapped into a graph of its own
+	return new Snapshot(loader.getGraph(),backend,frontend);
+    }
+
+    // returns the shared snapshot, creating it on first use
+    private static Snapshot getSnapshot() throws IOException {
+	Snapshot current = snapshot.get();
+	if(current == null) {
+	    synchronized(WebApp.class) {
+		if(snapshot.get() == null) {
+		    snapshot.set(createSnapshot(graphFile));
+		    // responses computed from any earlier graph are now stale
+		    if(cache != null) cache.invalidateAll();
+		}
+		current = snapshot.get();
+	    }
+	}
+	return current;
+    }
+
+    // builds a new snapshot from the graph file off to the side, and only if
+    // it looks complete, swaps it in for the one that requests are using
+    private static void reloadSnapshot() {
+	try {
+	    Snapshot replacement = createSnapshot(graphFile);
+	    if(replacement.graph.getNodeCount() == 0 ||
+	       replacement.graph.getEdgeCount() == 0)
+		throw new IOException("the reloaded graph has no locations or paths");
+	    snapshot.set(replacement);
+	    // responses computed from the old graph are now stale
+	    if(cache != null) cache.invalidateAll();
+	    RELOAD_SUCCESSES.increment();
+	    System.out.println("Reloaded " + graphFile + " with " +
+			       replacement.graph.getNodeCount() + " locations");
+	} catch(Exception e) {
+	    RELOAD_FAILURES.increment();
+	    System.out.println("Keeping the current graph, unable to reload " +
+			       graphFile + ": " + e);
+	}
     }
 
     // creates the html response for the kind of question requeted (if any)
@@ -153,18 +660,24 @@ public class WebApp {
 	return firstPrompt + secondPrompt;
     }
 
-    // compose reponse with prompts inside a complete html tree
-    private static String composeHTML(String response, String prompts) throws IOException {
-	// read contents of template file into html string
-	String html = "";
-	Scanner in = new Scanner(new File("template.html"));
-	while(in.hasNextLine()) html += in.nextLine() + "\n";
+    // returns the shared template, reading it on first use
+    private static HtmlTemplate getTemplate() throws IOException {
+	HtmlTemplate current = template;
+	if(current == null) {
+	    synchronized(WebApp.class) {
+		if(template == null)
+		    template = new HtmlTemplate("template.html",
+						"<!-- RESPONSE GOES HERE -->",
+						"<!-- PROMPTS GO HERE -->");
+		current = template;
+	    }
+	}
+	return current;
+    }
 
-	// replace placeholders for response and prompts
-	html = html.replaceFirst("<!-- RESPONSE GOES HERE -->",response);
-	html = html.replaceFirst("<!-- PROMPTS GO HERE -->",prompts);
-	
-	return html;
+    // compose reponse with prompts inside a complete html tree
+    private static byte[] composeHTML(String response, String prompts) throws IOException {
+	return getTemplate().render(response,prompts);
     }
 
     // Since we cannot run a public webserver on the department's linux
@@ -175,16 +688,15 @@ public class WebApp {
 	    query = URLDecoder.decode(query, StandardCharsets.UTF_8);
 	    Map<String,String> keyValuePairs = parseQuery(query);
 	    
-	    // create backend and frontend objects to respond to this request
-	    FrontendInterface frontend = createWorkingFrontend("./campus.dot");
+	    // every request shares the same backend and frontend objects
+	    FrontendInterface frontend = getSnapshot().frontend;
 	    // compute answer to user's requested problem based on query args:
 	    String response = generateResponseHTML(keyValuePairs,frontend);
 	    // generate HTML prompts for user for make next requests
 	    String prompts = generatePromptHTML(frontend);
-	    // compose response and prompts into a complete html template
-	    String html = composeHTML(response,prompts);
-		
-	    System.out.println(html);
+	    // write response and prompts within the html template to stdout
+	    getTemplate().write(System.out,response,prompts);
+	    System.out.flush();
 						
 	    // unless something goes wrong, in which case report problem
 	} catch (Exception e) {